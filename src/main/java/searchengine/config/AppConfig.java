@@ -4,6 +4,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import searchengine.services.PageCrawler ;
 
@@ -14,5 +15,21 @@ public class AppConfig {
         return Executors.newFixedThreadPool(4);
     }
 
+    /** Потоки параллельного поиска по сайтам. */
+    @Bean
+    public ExecutorService searchExecutor(SearchSettings searchSettings) {
+        return Executors.newFixedThreadPool(Math.max(1, searchSettings.getSearchThreads()));
+    }
+
+    /** Периодическое сохранение контрольных точек обхода; поток-демон не держит приложение при остановке. */
+    @Bean
+    public ScheduledExecutorService checkpointScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "crawl-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
 
 }
\ No newline at end of file
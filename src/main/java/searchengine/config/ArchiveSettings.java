@@ -0,0 +1,20 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "archive-settings")
+public class ArchiveSettings {
+    /** Сохранять ли полученные при обходе ответы в локальный архив. */
+    private boolean enabled = false;
+    private String directory = "archive";
+    /** После какого размера начинается новый сегмент архива. */
+    private int segmentSizeMb = 64;
+    /** Потоков для переиндексации из архива; 0 — по числу процессоров. */
+    private int reindexThreads = 0;
+}
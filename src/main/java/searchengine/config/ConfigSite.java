@@ -2,10 +2,13 @@ package searchengine.config;
 
 import lombok.Getter;
 import lombok.Setter;
+import java.util.List;
 
 @Setter
 @Getter
 public class ConfigSite {
     private String url;
     private String name;
+    /** CSS-селекторы элементов, которые не индексируются на этом сайте. */
+    private List<String> excludeSelectors = List.of();
 }
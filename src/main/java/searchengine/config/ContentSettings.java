@@ -0,0 +1,24 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import java.util.List;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "content-settings")
+public class ContentSettings {
+    /** Убирать ли из текста страницы меню, шапку, подвал и повторяющиеся на сайте блоки. */
+    private boolean boilerplateRemoval = true;
+    /** Теги, содержимое которых не попадает в текст страницы. */
+    private List<String> excludedTags = List.of("nav", "header", "footer", "script", "style", "noscript", "template");
+    /** На скольких страницах сайта должен встретиться блок текста, чтобы считаться частью шаблона. */
+    private int repeatedBlockPages = 5;
+    /** Сколько разных блоков запоминать на сайт. */
+    private int maxTrackedBlocks = 200_000;
+    /** Каталог, где между перезапусками хранятся хеши блоков шаблона сайтов. */
+    private String templateDirectory = "templates";
+}
@@ -0,0 +1,45 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "crawl-settings")
+public class CrawlSettings {
+    /** Следить ли за шаблонами адресов, которые порождают много страниц без новых лемм и новых адресов. */
+    private boolean trapDetection = false;
+    /** Сколько страниц шаблона оценивается за раз. */
+    private int templateWindow = 50;
+    /** Ниже скольких новых лемм на страницу шаблон считается малополезным. */
+    private double minNewLemmasPerPage = 1.0;
+    /** Ниже скольких новых адресов других шаблонов на страницу шаблон считается малополезным. */
+    private double minNewUrlsPerPage = 1.0;
+    /** Во сколько раз шаблон должен уступать сайту в среднем по новым леммам и адресам, чтобы его ограничить. */
+    private double minYieldRatio = 0.2;
+    /** Каждый который адрес ограниченного шаблона всё же загружается. */
+    private int throttleRatio = 10;
+    /** Больше скольких страниц по ограниченному шаблону не загружается. */
+    private int maxPagesPerTemplate = 5000;
+    /** Добавлять ли в обход адреса из sitemap.xml сайта. */
+    private boolean sitemapSeeding = true;
+    /** Больше скольких адресов из sitemap не читается. */
+    private int maxSitemapUrls = 100_000;
+    /** Больше скольких файлов sitemap (включая вложенные индексы) не загружается. */
+    private int maxSitemaps = 200;
+    /** С какого числа одновременных запросов к хосту начинается обход. */
+    private int initialConcurrency = 2;
+    /** Больше скольких одновременных запросов к одному хосту не делается. */
+    private int maxConcurrency = 16;
+    /** Во сколько раз задержка ответа может вырасти относительно лучшей, прежде чем нагрузка снижается. */
+    private double latencyTolerance = 2.0;
+    /** Во сколько раз уменьшается число запросов при 429/503, тайм-аутах и росте задержки. */
+    private double backoffFactor = 0.5;
+    /** Каталог контрольных точек обхода, по которым прерванный обход продолжается. */
+    private String checkpointDirectory = "checkpoints";
+    /** Как часто сохраняется контрольная точка идущего обхода. */
+    private int checkpointIntervalSeconds = 60;
+}
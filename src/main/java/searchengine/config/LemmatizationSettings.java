@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "lemmatization-settings")
+public class LemmatizationSettings {
+    /** Сколько словоформ держать в кэше лемматизатора. */
+    private int cacheSize = 200_000;
+    /** С какой длины текста (в символах) страница лемматизируется в несколько потоков. */
+    private int parallelThreshold = 200_000;
+    /** Примерный размер части текста при параллельной лемматизации. */
+    private int chunkSize = 50_000;
+}
@@ -0,0 +1,31 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-settings")
+public class SearchSettings {
+    private double maxLemmaFrequencyPercent = 80;
+    private double bm25K1 = 1.2;
+    private double bm25B = 0.75;
+    /** Как сочетаются слова запроса: AND — страница должна содержать все леммы, OR — хотя бы одну. */
+    private String defaultOperator = "AND";
+    /** Заменять отсутствующие в словаре леммы запроса ближайшими по расстоянию правки. */
+    private boolean typoCorrection = true;
+    /** До скольких найденных страниц считать точно; дальше подсчёт останавливается (0 — считать все). */
+    private int countLimit = 10_000;
+    /** Потоков для параллельного поиска по сайтам. */
+    private int searchThreads = 4;
+    /** Держать копию обратного индекса в памяти и ранжировать по ней, обращаясь к базе только за содержимым страниц. */
+    private boolean inMemoryIndex = false;
+    /** Реализация поиска: jpa — по таблицам lemma/index, lucene — по локальному индексу Lucene. */
+    private String engine = "jpa";
+    /** Вести индекс Lucene при индексации, даже если поиск идёт через jpa. */
+    private boolean luceneIndex = false;
+    private String luceneIndexPath = "lucene-index";
+}
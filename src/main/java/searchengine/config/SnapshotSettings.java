@@ -0,0 +1,17 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "snapshot-settings")
+public class SnapshotSettings {
+    /** Каталог, куда пишутся снимки индекса и откуда они загружаются. */
+    private String directory = "snapshots";
+    /** Сколько строк читается из базы или пишется в неё за один запрос. */
+    private int batchSize = 1000;
+}
@@ -1,5 +1,6 @@
 package searchengine.controllers;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,6 +11,7 @@ import searchengine.services.IndexingService;
 import searchengine.services.StatisticsService;
 import searchengine.config.SitesList ;
 import searchengine.dto.search.SearchResponse;
+import searchengine.dto.suggest.SuggestResponse;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,13 +22,25 @@ import org.springframework.web.bind.annotation.PostMapping;
 import searchengine.services.PageIndexingService;
 import java.util.concurrent.ExecutorService;
 import searchengine.services.SearchService;
+import searchengine.services.SuggestService;
+import searchengine.services.SnapshotService;
+import searchengine.services.ArchiveReindexService;
+import searchengine.config.ConfigSite;
+import java.util.List;
 import org.springframework.context.annotation.Lazy;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import searchengine.services.SearchStream;
+import java.io.IOException;
+import java.io.OutputStream;
 
 @RestController
 @Lazy
 @RequestMapping("/api")
 public class ApiController {
     private static final Logger logger = LoggerFactory.getLogger(ApiController.class);
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
     @Lazy
     private final StatisticsService statisticsService;
     @Lazy
@@ -35,15 +49,23 @@ public class ApiController {
     private final PageIndexingService pageIndexingService;
     private final SearchService searchService;
     private final SitesList sitesList;
+    private final SuggestService suggestService;
+    private final ObjectMapper objectMapper;
+    private final SnapshotService snapshotService;
+    private final ArchiveReindexService archiveReindexService;
     private boolean indexingInProgress = false;
 
-    public ApiController(@Lazy StatisticsService statisticsService,SitesList sitesList,SearchService searchService,@Lazy PageIndexingService pageIndexingService,@Lazy IndexingService indexingService, ExecutorService executorService) {
+    public ApiController(@Lazy StatisticsService statisticsService,SitesList sitesList,SearchService searchService,@Lazy PageIndexingService pageIndexingService,@Lazy IndexingService indexingService, @Qualifier("executorService") ExecutorService executorService, SuggestService suggestService, ObjectMapper objectMapper, @Lazy SnapshotService snapshotService, @Lazy ArchiveReindexService archiveReindexService) {
         this.statisticsService = statisticsService;
         this.indexingService = indexingService;
         this.sitesList = sitesList;
         this.executorService = executorService;
         this.pageIndexingService = pageIndexingService;
         this.searchService = searchService;
+        this.suggestService = suggestService;
+        this.objectMapper = objectMapper;
+        this.snapshotService = snapshotService;
+        this.archiveReindexService = archiveReindexService;
     }
 
     @GetMapping("/statistics")
@@ -54,7 +76,7 @@ public class ApiController {
 
     @GetMapping("/startIndexing")
     public ResponseEntity<Map<String, Object>> startIndexing() {
-        if (indexingInProgress) {
+        if (indexingInProgress || indexingService.isBusy()) {
             Map<String, Object> response = new HashMap<>();
             response.put("result", false);
             response.put("error", "Индексация уже запущена");
@@ -87,6 +109,40 @@ public class ApiController {
         }
     }
 
+    /**
+     * Повторный обход проиндексированных сайтов по их sitemap: загружаются только изменённые и новые страницы.
+     */
+    @GetMapping("/startRecrawl")
+    public ResponseEntity<Map<String, Object>> startRecrawl() {
+        Map<String, Object> response = new HashMap<>();
+        if (indexingInProgress || indexingService.isBusy()) {
+            response.put("result", false);
+            response.put("error", "Индексация уже запущена");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+        indexingService.startRecrawl();
+        response.put("result", true);
+        response.put("message", "Повторный обход начался асинхронно.");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Продолжение прерванной индексации с контрольных точек обхода без удаления сохранённых страниц.
+     */
+    @GetMapping("/resumeIndexing")
+    public ResponseEntity<Map<String, Object>> resumeIndexing() {
+        Map<String, Object> response = new HashMap<>();
+        if (indexingInProgress || indexingService.isBusy()) {
+            response.put("result", false);
+            response.put("error", "Индексация уже запущена");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+        indexingService.startResume();
+        response.put("result", true);
+        response.put("message", "Индексация продолжается асинхронно.");
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/stopIndexing")
     public ResponseEntity<Map<String, Object>> stopIndexing() {
         try {
@@ -104,7 +160,7 @@ public class ApiController {
 
     @PostMapping("/indexPage")
     public ResponseEntity<Map<String, Object>> indexPage(@RequestParam String url) {
-        if (indexingInProgress) {
+        if (indexingInProgress || indexingService.isBusy()) {
             Map<String, Object> response = new HashMap<>();
             response.put("result", false);
             response.put("error", "Индексация уже запущена");
@@ -137,12 +193,37 @@ public class ApiController {
         }
     }
 
+    /**
+     * Переиндексация из локального архива ответов без обращения к сайтам.
+     */
+    @PostMapping("/reindexFromArchive")
+    public ResponseEntity<Map<String, Object>> reindexFromArchive(@RequestParam(required = false) String site) {
+        Map<String, Object> response = new HashMap<>();
+        if (indexingInProgress || indexingService.isBusy()) {
+            response.put("result", false);
+            response.put("error", "Индексация уже запущена");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+        try {
+            List<ConfigSite> sites = archiveReindexService.prepare(site);
+            CompletableFuture.runAsync(() -> archiveReindexService.reindex(sites));
+            response.put("result", true);
+            response.put("message", "Переиндексация из архива началась асинхронно.");
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            response.put("result", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+
     @GetMapping("/search")
     public ResponseEntity<SearchResponse> search(
             @RequestParam String query,
             @RequestParam(required = false) String site,
             @RequestParam(defaultValue = "0") int offset,
-            @RequestParam(defaultValue = "20") int limit) {
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor) {
 
         if (query == null || query.trim().isEmpty()) {
             return ResponseEntity.badRequest()
@@ -150,7 +231,7 @@ public class ApiController {
         }
 
         try {
-            SearchResponse searchResponse = searchService.search(query, site, offset, limit);
+            SearchResponse searchResponse = searchService.search(query, site, offset, limit, cursor);
             return ResponseEntity.ok(searchResponse);
         } catch (Exception e) {
             logger.error("Ошибка выполнения поиска: {}", e.getMessage(), e);
@@ -158,4 +239,132 @@ public class ApiController {
                     .body(new SearchResponse("Ошибка при выполнении поиска"));
         }
     }
+
+    /**
+     * Поиск с потоковой выдачей в формате NDJSON: первая строка — заголовок (result, count, cursor или error),
+     * далее по одной строке на результат. Ранжирование выполняется до начала передачи: его ошибка — ответ 500.
+     */
+    @GetMapping(value = "/search/stream", produces = "application/x-ndjson")
+    public ResponseEntity<?> searchStream(
+            @RequestParam String query,
+            @RequestParam(required = false) String site,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor) {
+
+        SearchStream stream;
+        try {
+            stream = searchService.stream(query, site, offset, limit, cursor);
+        } catch (Exception e) {
+            logger.error("Ошибка выполнения поиска: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(new SearchResponse("Ошибка при выполнении поиска"));
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            boolean headerSent = false;
+            try {
+                writeLine(outputStream, stream.getHeader());
+                headerSent = true;
+                stream.forEachResult(result -> writeLine(outputStream, result));
+            } catch (ClientAbortedException e) {
+                logger.warn("Клиент прервал получение результатов поиска: {}", e.getCause().getMessage());
+            } catch (RuntimeException e) {
+                logger.error("Ошибка выполнения поиска: {}", e.getMessage(), e);
+                if (!headerSent) {
+                    writeLine(outputStream, new SearchResponse("Ошибка при выполнении поиска"));
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /** Ошибка записи в ответ — клиент закрыл соединение; в отличие от ошибок поиска, сообщать о ней некому. */
+    private static class ClientAbortedException extends RuntimeException {
+        private ClientAbortedException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    private void writeLine(OutputStream outputStream, Object value) {
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(value));
+            outputStream.write('\n');
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new ClientAbortedException(e);
+        }
+    }
+
+    @PostMapping("/snapshot/export")
+    public ResponseEntity<Map<String, Object>> exportSnapshot(@RequestParam String site) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.put("result", true);
+            response.put("file", snapshotService.exportSite(site));
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("result", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (Exception e) {
+            logger.error("Ошибка при выгрузке снимка сайта {}: {}", site, e.getMessage(), e);
+            response.put("result", false);
+            response.put("error", "Ошибка при выгрузке снимка: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    @PostMapping("/snapshot/import")
+    public ResponseEntity<Map<String, Object>> importSnapshot(@RequestParam String file) {
+        Map<String, Object> response = new HashMap<>();
+        if (indexingInProgress || indexingService.isBusy()) {
+            response.put("result", false);
+            response.put("error", "Индексация уже запущена");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+        try {
+            response.put("result", true);
+            response.put("site", snapshotService.importSnapshot(file));
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            response.put("result", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (Exception e) {
+            logger.error("Ошибка при загрузке снимка {}: {}", file, e.getMessage(), e);
+            response.put("result", false);
+            response.put("error", "Ошибка при загрузке снимка: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    @GetMapping("/snapshots")
+    public ResponseEntity<Map<String, Object>> snapshots() {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.put("result", true);
+            response.put("files", snapshotService.listSnapshots());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("result", false);
+            response.put("error", "Не удалось прочитать каталог снимков: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<SuggestResponse> suggest(
+            @RequestParam String query,
+            @RequestParam(required = false) String site,
+            @RequestParam(defaultValue = "10") int limit) {
+
+        if (query == null || query.trim().isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(new SuggestResponse("Задан пустой запрос"));
+        }
+
+        return ResponseEntity.ok(new SuggestResponse(suggestService.suggest(query, site, limit)));
+    }
 }
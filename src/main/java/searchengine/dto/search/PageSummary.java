@@ -0,0 +1,14 @@
+package searchengine.dto.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class PageSummary {
+    private Integer id;
+    private String path;
+    private String title;
+    private String siteUrl;
+    private String siteName;
+}
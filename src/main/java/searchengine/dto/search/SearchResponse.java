@@ -14,12 +14,19 @@ public class SearchResponse {
     private int count;
     private List<SearchResult> data;
     private String error;
+    /** Курсор для запроса следующей страницы выдачи; null, если результатов больше нет. */
+    private String cursor;
 
     public SearchResponse(boolean result, int count, List<SearchResult> data) {
+        this(result, count, data, null);
+    }
+
+    public SearchResponse(boolean result, int count, List<SearchResult> data, String cursor) {
         this.result = result;
         this.count = count;
         this.data = data;
         this.error = null;
+        this.cursor = cursor;
     }
 
     public SearchResponse(String error) {
@@ -0,0 +1,14 @@
+package searchengine.dto.statistics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class CrawlTrapItem {
+    private String template;
+    private String status;
+    private int pages;
+    private long newLemmas;
+    private long newUrls;
+}
@@ -2,6 +2,8 @@ package searchengine.dto.statistics;
 
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class DetailedStatisticsItem {
     private String url;
@@ -11,4 +13,5 @@ public class DetailedStatisticsItem {
     private String error;
     private int pages;
     private int lemmas;
+    private List<CrawlTrapItem> crawlTraps;
 }
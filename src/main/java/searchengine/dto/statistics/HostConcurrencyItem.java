@@ -0,0 +1,14 @@
+package searchengine.dto.statistics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class HostConcurrencyItem {
+    private String host;
+    private int concurrency;
+    private int inFlight;
+    private long averageLatencyMs;
+    private long backoffs;
+}
@@ -0,0 +1,12 @@
+package searchengine.dto.statistics;
+
+import lombok.Data;
+
+@Data
+public class LemmaCacheStatistics {
+    private int size;
+    private int capacity;
+    private long hits;
+    private long misses;
+    private double hitRate;
+}
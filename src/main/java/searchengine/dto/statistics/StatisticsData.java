@@ -8,4 +8,6 @@ import java.util.List;
 public class StatisticsData {
     private TotalStatistics total;
     private List<DetailedStatisticsItem> detailed;
+    private LemmaCacheStatistics lemmaCache;
+    private List<HostConcurrencyItem> hosts;
 }
@@ -0,0 +1,11 @@
+package searchengine.dto.suggest;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class SuggestItem {
+    private String lemma;
+    private int frequency;
+}
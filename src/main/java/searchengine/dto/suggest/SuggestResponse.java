@@ -0,0 +1,28 @@
+package searchengine.dto.suggest;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestResponse {
+    private boolean result;
+    private List<SuggestItem> data;
+    private String error;
+
+    public SuggestResponse(List<SuggestItem> data) {
+        this.result = true;
+        this.data = data;
+        this.error = null;
+    }
+
+    public SuggestResponse(String error) {
+        this.result = false;
+        this.data = null;
+        this.error = error;
+    }
+}
@@ -27,4 +27,9 @@ public class Index {
 
     @Column(name = "'rank'", nullable = false)
     private Float rank;
+
+    /** Номера слов страницы, где встречается лемма, в формате {@link searchengine.utils.PositionCodec}. */
+    @Lob
+    @Column(name = "positions", columnDefinition = "MEDIUMBLOB")
+    private byte[] positions;
 }
@@ -37,4 +37,7 @@ public class Lemma {
     @Column(name = "frequency", nullable = false)
     private Integer frequency = 1;
 
+    @Column(name = "max_rank")
+    private Float maxRank;
+
 }
@@ -5,7 +5,6 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 
 @Entity
 @Table(
@@ -38,17 +37,25 @@ public class Page {
     @Column(length = 500)
     private String contentType;
 
-    @Transient
+    @Column(length = 500)
     private String title;
 
+    @Column(name = "token_count")
+    private Integer tokenCount;
+
     @Transient
     private String text;
 
+    /** Текст содержимого страницы; разбирается один раз при первом обращении. */
     public String getText() {
-        if (content != null) {
-            Document doc = Jsoup.parse(content);
-            return doc.text();
+        if (text == null && content != null) {
+            text = Jsoup.parse(content).text();
         }
-        return null;
+        return text;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+        this.text = null;
     }
 }
@@ -32,6 +32,10 @@ public class Site {
     @Column(name = "status_time", nullable = false)
     private LocalDateTime statusTime;
 
+    /** Начало последнего завершённого обхода; повторный обход загружает страницы sitemap, изменённые после него. */
+    @Column(name = "crawl_start_time")
+    private LocalDateTime crawlStartTime;
+
     @Column(columnDefinition = "TEXT")
     private String lastError;
 
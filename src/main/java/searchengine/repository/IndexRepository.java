@@ -2,12 +2,15 @@ package searchengine.repository;
 
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Index;
 
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.Collection;
+import java.util.List;
 import searchengine.model.Lemma;
 import searchengine.model.Page;
 
@@ -20,4 +23,32 @@ public interface IndexRepository extends JpaRepository<Index, Integer> {
 
     Index findByLemmaAndPage(Lemma lemma, Page page);
 
+    @Query("SELECT i.lemma.id FROM Index i WHERE i.page.id = :pageId")
+    List<Integer> findLemmaIdsByPageId(@Param("pageId") int pageId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Index i WHERE i.page.id = :pageId")
+    int deleteByPageId(@Param("pageId") int pageId);
+
+    @Query("SELECT i.page.id, i.lemma.id, i.rank FROM Index i WHERE i.lemma.id IN :lemmaIds " +
+            "ORDER BY i.lemma.id, i.page.id")
+    List<Object[]> findPostingsByLemmaIds(@Param("lemmaIds") Collection<Integer> lemmaIds);
+
+    @Query("SELECT i.lemma.id, i.page.id, i.rank FROM Index i WHERE i.lemma.site.id = :siteId " +
+            "ORDER BY i.lemma.id, i.page.id")
+    List<Object[]> findPostingsBySiteId(@Param("siteId") int siteId);
+
+    @Query("SELECT i.page.id, i.lemma.id, i.rank, i.positions FROM Index i WHERE i.lemma.id IN :lemmaIds " +
+            "ORDER BY i.lemma.id, i.page.id")
+    List<Object[]> findPostingsWithPositionsByLemmaIds(@Param("lemmaIds") Collection<Integer> lemmaIds);
+
+    @Query("SELECT i.page.id, i.lemma.id, i.positions FROM Index i " +
+            "WHERE i.page.id IN :pageIds AND i.lemma.id IN :lemmaIds")
+    List<Object[]> findPositionsByPageIdsAndLemmaIds(@Param("pageIds") Collection<Integer> pageIds,
+                                                     @Param("lemmaIds") Collection<Integer> lemmaIds);
+
+    @Query("SELECT i.id, i.page.id, i.lemma.id, i.rank, i.positions FROM Index i " +
+            "WHERE i.lemma.site.id = :siteId AND i.id > :afterId ORDER BY i.id")
+    List<Object[]> findSnapshotRows(@Param("siteId") int siteId, @Param("afterId") int afterId, Pageable pageable);
 }
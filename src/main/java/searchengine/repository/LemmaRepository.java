@@ -2,12 +2,14 @@ package searchengine.repository;
 
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.domain.Pageable;
 import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Lemma;
 import searchengine.model.Site;
 import org.springframework.data.jpa.repository.JpaRepository;
 import java.util.Optional;
 import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List;
 
 
@@ -23,7 +25,32 @@ public interface LemmaRepository extends JpaRepository<Lemma, Long> {
     @Query("DELETE FROM Lemma l WHERE l.site.id = :siteId")
     int deleteBySiteId(Long siteId);
 
+    @Modifying
+    @Transactional
+    @Query("UPDATE Lemma l SET l.frequency = l.frequency - 1 WHERE l.id IN :ids")
+    int decrementFrequencies(@Param("ids") Collection<Integer> ids);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Lemma l WHERE l.site.id = :siteId AND l.frequency <= 0")
+    int deleteUnusedBySiteId(@Param("siteId") int siteId);
+
 
     Optional<Lemma> findByLemmaAndSite(String lemma, Site site);
 
+    @Query("SELECT l.lemma, l.frequency FROM Lemma l WHERE l.site.id = :siteId")
+    List<Object[]> findLemmaFrequenciesBySiteId(@Param("siteId") int siteId);
+
+    @Query("SELECT l.id, l.lemma FROM Lemma l WHERE l.lemma IN :lemmas")
+    List<Object[]> findIdsByLemmas(@Param("lemmas") Collection<String> lemmas);
+
+    @Query("SELECT l.id, l.lemma FROM Lemma l WHERE l.site.id = :siteId")
+    List<Object[]> findLemmaIdsBySiteId(@Param("siteId") int siteId);
+
+    @Query("SELECT l.id, l.lemma, l.site.id, l.frequency, l.maxRank FROM Lemma l WHERE l.lemma IN :lemmas AND l.site.id = :siteId")
+    List<Object[]> findFrequenciesByLemmasAndSiteId(@Param("lemmas") Collection<String> lemmas, @Param("siteId") int siteId);
+
+    @Query("SELECT l.id, l.lemma, l.frequency, l.maxRank FROM Lemma l " +
+            "WHERE l.site.id = :siteId AND l.id > :afterId ORDER BY l.id")
+    List<Object[]> findSnapshotRows(@Param("siteId") int siteId, @Param("afterId") int afterId, Pageable pageable);
 }
@@ -2,11 +2,14 @@ package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.data.jpa.repository.Modifying;
 import searchengine.model.Page;
+import searchengine.dto.search.PageSummary;
 import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List;
 import searchengine.model.Site;
 
@@ -18,18 +21,26 @@ public interface PageRepository extends JpaRepository<Page, Integer> {
     @Query("DELETE FROM Page p WHERE p.site.id = :siteId")
     int deleteAllBySiteId(int siteId);
 
+    @Query("SELECT p FROM Page p WHERE p.path = :path AND p.site.id = :siteId")
+    List<Page> findByPathAndSiteId(@Param("path") String path, @Param("siteId") int siteId);
+
     @Query("SELECT COUNT(p) > 0 FROM Page p WHERE p.path = :path AND p.site.id = :siteId")
     boolean existsByPathAndSiteId(String path, int siteId);
 
     int countBySite(Site site);
 
-    @Query("SELECT p FROM Page p WHERE p.id IN " +
-            "(SELECT i.page.id FROM Index i WHERE i.lemma.lemma IN :lemmas)")
-    List<Page> findPagesByLemmas(@Param("lemmas") List<String> lemmas);
+    /** Только проиндексированные HTML-страницы: у ошибок, изображений и прочего token_count не задан. */
+    @Query("SELECT p.id, p.site.id, p.tokenCount FROM Page p WHERE p.tokenCount IS NOT NULL")
+    List<Object[]> findTokenCounts();
 
-    @Query("SELECT p FROM Page p WHERE p.site.url = :site AND p.id IN " +
-            "(SELECT i.page.id FROM Index i WHERE i.lemma.lemma IN :lemmas)")
-    List<Page> findPagesByLemmas(@Param("lemmas") List<String> lemmas, @Param("site") String site);
+    @Query("SELECT new searchengine.dto.search.PageSummary(p.id, p.path, p.title, s.url, s.name) " +
+            "FROM Page p JOIN p.site s WHERE p.id IN :ids")
+    List<PageSummary> findSummariesByIds(@Param("ids") Collection<Integer> ids);
 
+    @Query("SELECT p.id, p.content FROM Page p WHERE p.id IN :ids")
+    List<Object[]> findContentsByIds(@Param("ids") Collection<Integer> ids);
 
+    @Query("SELECT p.id, p.path, p.code, p.content, p.title, p.tokenCount FROM Page p " +
+            "WHERE p.site.id = :siteId AND p.id > :afterId ORDER BY p.id")
+    List<Object[]> findSnapshotRows(@Param("siteId") int siteId, @Param("afterId") int afterId, Pageable pageable);
 }
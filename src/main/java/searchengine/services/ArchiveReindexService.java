@@ -0,0 +1,141 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import searchengine.config.ArchiveSettings;
+import searchengine.config.ConfigSite;
+import searchengine.config.SitesList;
+import searchengine.model.IndexingStatus;
+import searchengine.model.Site;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Переиндексация сайтов из локального архива ответов без обращения к сети: записи последнего поколения
+ * (для каждого адреса — последний полученный ответ) читаются последовательно и разбираются пулом потоков, так что скорость ограничена только процессором.
+ */
+@Service
+public class ArchiveReindexService {
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveReindexService.class);
+
+    private final SitesList sitesList;
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final IndexRepository indexRepository;
+    private final IndexingService indexingService;
+    private final PageArchive pageArchive;
+    private final ArchiveSettings archiveSettings;
+
+    public ArchiveReindexService(SitesList sitesList, SiteRepository siteRepository, PageRepository pageRepository, LemmaRepository lemmaRepository, IndexRepository indexRepository, IndexingService indexingService, PageArchive pageArchive, ArchiveSettings archiveSettings) {
+        this.sitesList = sitesList;
+        this.siteRepository = siteRepository;
+        this.pageRepository = pageRepository;
+        this.lemmaRepository = lemmaRepository;
+        this.indexRepository = indexRepository;
+        this.indexingService = indexingService;
+        this.pageArchive = pageArchive;
+        this.archiveSettings = archiveSettings;
+    }
+
+    /**
+     * Проверяет, что переиндексацию можно начать, и занимает под неё индексацию
+     * ({@link IndexingService#beginExclusive()}); освобождает её {@link #reindex}.
+     * @param siteUrl сайт из конфигурации или null для всех сайтов
+     * @return сайты, которые будут переиндексированы
+     */
+    public synchronized List<ConfigSite> prepare(String siteUrl) {
+        List<ConfigSite> sites = sitesList.getSites().stream()
+                .filter(site -> siteUrl == null || site.getUrl().equals(siteUrl))
+                .collect(Collectors.toList());
+        if (sites.isEmpty()) {
+            throw new IllegalArgumentException("Сайт не найден в конфигурации: " + siteUrl);
+        }
+        indexingService.beginExclusive();
+        return sites;
+    }
+
+    public void reindex(List<ConfigSite> sites) {
+        try {
+            for (ConfigSite site : sites) {
+                reindexSite(site);
+            }
+        } finally {
+            indexingService.endExclusive();
+        }
+    }
+
+    private void reindexSite(ConfigSite configSite) {
+        Optional<Path> generation;
+        try {
+            generation = pageArchive.latestGeneration(configSite.getUrl());
+        } catch (Exception e) {
+            logger.error("Не удалось прочитать архив сайта {}: {}", configSite.getUrl(), e.getMessage());
+            return;
+        }
+        if (generation.isEmpty()) {
+            logger.warn("Для сайта {} нет архива, переиндексация пропущена", configSite.getUrl());
+            return;
+        }
+
+        indexingService.deleteSiteData(configSite.getUrl());
+        Site site = new Site();
+        site.setName(configSite.getName());
+        site.setUrl(configSite.getUrl());
+        site.setStatus(IndexingStatus.INDEXING);
+        site.setStatusTime(LocalDateTime.now());
+        siteRepository.save(site);
+
+        PageIndexer pageIndexer = new PageIndexer(site, pageRepository, lemmaRepository, indexRepository, indexingService);
+        int threads = archiveSettings.getReindexThreads() > 0
+                ? archiveSettings.getReindexThreads()
+                : Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+        AtomicInteger pages = new AtomicInteger();
+        long start = System.currentTimeMillis();
+        try {
+            pageArchive.replayLatest(generation.get(), record -> executor.execute(() -> {
+                try {
+                    pageIndexer.store(record.getUrl(), record.getStatusCode(), record.getContentType(), record.getBody());
+                    pages.incrementAndGet();
+                } catch (Exception e) {
+                    logger.warn("Ошибка переиндексации {} из архива: {}", record.getUrl(), e.getMessage());
+                }
+            }));
+            executor.shutdown();
+            if (!executor.awaitTermination(1, TimeUnit.HOURS)) {
+                throw new TimeoutException("переиндексация не завершилась за час");
+            }
+            site.setStatus(IndexingStatus.INDEXED);
+            site.setLastError(null);
+            logger.info("Сайт {} переиндексирован из архива {}: {} записей за {} мс",
+                    site.getUrl(), generation.get(), pages.get(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            executor.shutdownNow();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            site.setStatus(IndexingStatus.FAILED);
+            site.setLastError("Ошибка переиндексации из архива: " + e.getMessage());
+            logger.error("Ошибка переиндексации сайта {} из архива: {}", site.getUrl(), e.getMessage(), e);
+        } finally {
+            site.setStatusTime(LocalDateTime.now());
+            siteRepository.save(site);
+            indexingService.publishSiteIndexed(site.getUrl());
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package searchengine.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Ответ сервера, прочитанный из архива обхода.
+ */
+@Getter
+@AllArgsConstructor
+public class ArchivedResponse {
+    private final String url;
+    private final int statusCode;
+    private final String contentType;
+    private final byte[] body;
+}
@@ -0,0 +1,61 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+
+/**
+ * Ранжирование BM25: idf берётся из Lemma.frequency и числа страниц сайта,
+ * длина страницы и средняя длина по сайту — из {@link DocumentStatistics}.
+ */
+@Component
+public class Bm25Scorer {
+    private final DocumentStatistics documentStatistics;
+    private final SearchSettings searchSettings;
+
+    public Bm25Scorer(DocumentStatistics documentStatistics, SearchSettings searchSettings) {
+        this.documentStatistics = documentStatistics;
+        this.searchSettings = searchSettings;
+    }
+
+    public TermScorer forTerm(QueryTerm term) {
+        double pageCount = Math.max(documentStatistics.pageCount(term.getSiteId()), term.getFrequency());
+        double frequency = term.getFrequency();
+        double idf = Math.log(1 + (pageCount - frequency + 0.5) / (frequency + 0.5));
+        double averageLength = documentStatistics.averageTokenCount(term.getSiteId());
+        return new TermScorer(idf, searchSettings.getBm25K1(), searchSettings.getBm25B(), averageLength);
+    }
+
+    public class TermScorer {
+        private final double idf;
+        private final double k1;
+        private final double b;
+        private final double averageLength;
+
+        private TermScorer(double idf, double k1, double b, double averageLength) {
+            this.idf = idf;
+            this.k1 = k1;
+            this.b = b;
+            this.averageLength = averageLength;
+        }
+
+        public double score(int pageId, float termFrequency) {
+            double lengthRatio = 1;
+            if (averageLength > 0) {
+                int length = documentStatistics.tokenCount(pageId);
+                lengthRatio = length > 0 ? length / averageLength : 1;
+            }
+            return idf * termFrequency * (k1 + 1) / (termFrequency + k1 * (1 - b + b * lengthRatio));
+        }
+
+        /**
+         * Максимально возможный вклад леммы: наибольший ранг на самой короткой странице.
+         * Без известного максимального ранга — предел оценки при бесконечной частоте.
+         */
+        public double upperBound(Float maxRank) {
+            if (maxRank == null) {
+                return idf * (k1 + 1);
+            }
+            return idf * maxRank * (k1 + 1) / (maxRank + k1 * (1 - b));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package searchengine.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Вычисляет дерево запроса для одного сайта операциями над отсортированными списками id страниц:
+ * пересечение для AND, объединение для OR, вычитание для NOT.
+ * Операнды AND обрабатываются от самых редких к самым частым по Lemma.frequency,
+ * поэтому промежуточный результат быстро сужается и частые леммы только проверяются поиском.
+ */
+public class BooleanQueryExecutor {
+    private static final int[] EMPTY = new int[0];
+
+    private final Map<String, Postings> postingsByLemma;
+    private final Map<String, Postings> positionsByLemma;
+    private final Map<String, Integer> frequencies;
+
+    public BooleanQueryExecutor(Map<String, Postings> postingsByLemma, Map<String, Postings> positionsByLemma,
+                                Map<String, Integer> frequencies) {
+        this.postingsByLemma = postingsByLemma;
+        this.positionsByLemma = positionsByLemma;
+        this.frequencies = frequencies;
+    }
+
+    public int[] evaluate(QueryNode node) {
+        return switch (node.getType()) {
+            case TERM -> pageIds(postings(node.getLemma()));
+            case PHRASE -> evaluatePhrase(node.getPhrase());
+            case AND -> evaluateAnd(node.getChildren());
+            case OR -> evaluateOr(node.getChildren());
+            case NOT -> EMPTY;
+        };
+    }
+
+    private int[] evaluateAnd(List<QueryNode> children) {
+        List<QueryNode> positive = new ArrayList<>();
+        List<QueryNode> negative = new ArrayList<>();
+        for (QueryNode child : children) {
+            (child.getType() == QueryNode.Type.NOT ? negative : positive).add(child);
+        }
+        if (positive.isEmpty()) {
+            return EMPTY;
+        }
+        positive.sort(Comparator.comparingLong(this::cost));
+
+        int[] result = evaluate(positive.get(0));
+        for (int i = 1; i < positive.size() && result.length > 0; i++) {
+            QueryNode child = positive.get(i);
+            result = child.getType() == QueryNode.Type.TERM
+                    ? retain(result, postings(child.getLemma()), true)
+                    : intersect(result, evaluate(child));
+        }
+        for (int i = 0; i < negative.size() && result.length > 0; i++) {
+            QueryNode excluded = negative.get(i).getChildren().get(0);
+            result = excluded.getType() == QueryNode.Type.TERM
+                    ? retain(result, postings(excluded.getLemma()), false)
+                    : difference(result, evaluate(excluded));
+        }
+        return result;
+    }
+
+    private int[] evaluateOr(List<QueryNode> children) {
+        int[] result = EMPTY;
+        for (QueryNode child : children) {
+            result = union(result, evaluate(child));
+        }
+        return result;
+    }
+
+    private int[] evaluatePhrase(PhraseQuery phrase) {
+        List<String> lemmas = new ArrayList<>(phrase.getLemmas());
+        lemmas.sort(Comparator.comparingLong(this::frequency));
+        int[] candidates = pageIds(postings(lemmas.get(0)));
+        for (int i = 1; i < lemmas.size() && candidates.length > 0; i++) {
+            candidates = retain(candidates, postings(lemmas.get(i)), true);
+        }
+
+        List<Postings> phrasePostings = new ArrayList<>();
+        for (String lemma : phrase.getLemmas()) {
+            phrasePostings.add(positionsByLemma.getOrDefault(lemma, Postings.EMPTY));
+        }
+        PhraseMatcher matcher = new PhraseMatcher(phrasePostings, phrase.getOffsets(), phrase.getSlop());
+        int size = 0;
+        for (int pageId : candidates) {
+            if (matcher.matches(pageId)) {
+                candidates[size++] = pageId;
+            }
+        }
+        return Arrays.copyOf(candidates, size);
+    }
+
+    private long cost(QueryNode node) {
+        return switch (node.getType()) {
+            case TERM -> frequency(node.getLemma());
+            case PHRASE -> node.getPhrase().getLemmas().stream().mapToLong(this::frequency).min().orElse(0);
+            case AND -> node.getChildren().stream()
+                    .filter(child -> child.getType() != QueryNode.Type.NOT)
+                    .mapToLong(this::cost).min().orElse(0);
+            case OR -> node.getChildren().stream().mapToLong(this::cost).sum();
+            case NOT -> Long.MAX_VALUE;
+        };
+    }
+
+    private long frequency(String lemma) {
+        return frequencies.getOrDefault(lemma, 0);
+    }
+
+    private Postings postings(String lemma) {
+        return postingsByLemma.getOrDefault(lemma, Postings.EMPTY);
+    }
+
+    private static int[] pageIds(Postings postings) {
+        int[] pageIds = new int[postings.size()];
+        for (int i = 0; i < pageIds.length; i++) {
+            pageIds[i] = postings.pageId(i);
+        }
+        return pageIds;
+    }
+
+    /** Оставляет страницы, которые есть (present) или которых нет (!present) в списке леммы. */
+    private static int[] retain(int[] pageIds, Postings postings, boolean present) {
+        int[] result = new int[pageIds.length];
+        int size = 0;
+        int position = 0;
+        for (int pageId : pageIds) {
+            position = postings.seek(pageId, position);
+            boolean found = position < postings.size() && postings.pageId(position) == pageId;
+            if (found == present) {
+                result[size++] = pageId;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int[] intersect(int[] left, int[] right) {
+        int[] result = new int[Math.min(left.length, right.length)];
+        int size = 0;
+        for (int i = 0, j = 0; i < left.length && j < right.length; ) {
+            if (left[i] == right[j]) {
+                result[size++] = left[i];
+                i++;
+                j++;
+            } else if (left[i] < right[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int[] union(int[] left, int[] right) {
+        int[] result = new int[left.length + right.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.length || j < right.length) {
+            if (j >= right.length || (i < left.length && left[i] < right[j])) {
+                result[size++] = left[i++];
+            } else if (i >= left.length || right[j] < left[i]) {
+                result[size++] = right[j++];
+            } else {
+                result[size++] = left[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int[] difference(int[] left, int[] right) {
+        int[] result = new int[left.length];
+        int size = 0;
+        int j = 0;
+        for (int pageId : left) {
+            while (j < right.length && right[j] < pageId) {
+                j++;
+            }
+            if (j >= right.length || right[j] != pageId) {
+                result[size++] = pageId;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+}
@@ -0,0 +1,335 @@
+package searchengine.services;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+import org.jsoup.select.QueryParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import searchengine.config.ConfigSite;
+import searchengine.config.ContentSettings;
+import searchengine.config.SitesList;
+import searchengine.model.Site;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Извлекает основной текст, заголовок и ссылки страницы за один проход. Из текста пропускаются элементы
+ * из {@link ContentSettings#getExcludedTags()} и селекторов сайта, а текст делится на блоки по границам блочных элементов: блок, уже встреченный
+ * на {@link ContentSettings#getRepeatedBlockPages()} страницах сайта, считается частью шаблона и отбрасывается.
+ *
+ * Блоки считаются по ходу обхода, поэтому первые N страниц сайта сохраняются с шаблоном: их блоки запоминаются,
+ * и после обхода {@link #cleanFirstPages} отдаёт их текст без блоков, оказавшихся шаблоном. Хеши блоков шаблона
+ * пишутся в {@link ContentSettings#getTemplateDirectory()} по завершении индексации сайта и подхватываются после
+ * перезапуска. Ограничение: блок, ставший шаблоном после первых N страниц, остаётся на страницах, сохранённых раньше.
+ */
+@Component
+public class ContentExtractor {
+    private static final Logger logger = LoggerFactory.getLogger(ContentExtractor.class);
+
+    private final ContentSettings contentSettings;
+    private final SitesList sitesList;
+    private final Set<String> excludedTags;
+    private final Map<String, Optional<Evaluator>> siteSelectors = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<Long, AtomicInteger>> blockPages = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<String, List<String>>> firstPages = new ConcurrentHashMap<>();
+
+    public ContentExtractor(ContentSettings contentSettings, SitesList sitesList) {
+        this.contentSettings = contentSettings;
+        this.sitesList = sitesList;
+        this.excludedTags = new HashSet<>(contentSettings.getExcludedTags());
+    }
+
+    /**
+     * Один проход по документу: текст без исключённых элементов, заголовок и ссылки, в том числе
+     * из исключённых элементов — меню не индексируется, но по его ссылкам продолжается обход.
+     */
+    public PageContent extract(Site site, Document document) {
+        boolean boilerplateRemoval = contentSettings.isBoilerplateRemoval();
+        Evaluator selector = boilerplateRemoval ? selectorOf(site).orElse(null) : null;
+
+        List<String> blocks = new ArrayList<>();
+        StringBuilder block = new StringBuilder();
+        StringBuilder title = new StringBuilder();
+        Set<String> links = new LinkedHashSet<>();
+        NodeTraversor.traverse(new NodeVisitor() {
+            private Element skipped;
+            private Element titleElement;
+            private boolean titleDone;
+
+            @Override
+            public void head(Node node, int depth) {
+                if (node instanceof TextNode textNode) {
+                    if (titleElement != null) {
+                        appendNormalized(title, textNode.getWholeText());
+                    }
+                    if (skipped == null) {
+                        appendNormalized(block, textNode.getWholeText());
+                    }
+                    return;
+                }
+                if (!(node instanceof Element element)) {
+                    return;
+                }
+                String name = element.normalName();
+                if (name.equals("a") && element.hasAttr("href")) {
+                    addLink(links, element.absUrl("href"));
+                } else if (name.equals("title") && !titleDone) {
+                    titleElement = element;
+                }
+                if (skipped == null && boilerplateRemoval && (excludedTags.contains(name)
+                        || selector != null && selector.matches(document, element))) {
+                    skipped = element;
+                }
+                if (skipped == null && (element.isBlock() || name.equals("br"))) {
+                    endBlock(blocks, block);
+                }
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+                if (node == titleElement) {
+                    titleElement = null;
+                    titleDone = true;
+                }
+                if (node == skipped) {
+                    skipped = null;
+                } else if (skipped == null && node instanceof Element element && element.isBlock()) {
+                    endBlock(blocks, block);
+                }
+            }
+        }, document);
+        endBlock(blocks, block);
+
+        String text = boilerplateRemoval ? joinContentBlocks(site, document.location(), blocks) : String.join(" ", blocks);
+        return new PageContent(text, title.toString().trim(), new ArrayList<>(links));
+    }
+
+    /** Абсолютная ссылка без фрагмента; пустые и ссылки на фрагмент той же страницы не добавляются. */
+    private static void addLink(Set<String> links, String url) {
+        int fragment = url.indexOf('#');
+        if (fragment >= 0) {
+            url = url.substring(0, fragment);
+        }
+        if (!url.isEmpty()) {
+            links.add(url);
+        }
+    }
+
+    /** Забывает блоки шаблона удалённого сайта, в том числе сохранённые в файл. */
+    public void forgetSite(Site site) {
+        blockPages.remove(site.getId());
+        firstPages.remove(site.getId());
+        try {
+            Files.deleteIfExists(templateFile(site.getUrl()));
+        } catch (IOException e) {
+            logger.warn("Не удалось удалить блоки шаблона сайта {}: {}", site.getUrl(), e.getMessage());
+        }
+    }
+
+    /**
+     * Второй проход по первым страницам сайта: адрес — текст без блоков, встреченных больше чем на N страницах.
+     * Возвращаются только изменившиеся страницы; запомненные блоки после этого забываются.
+     */
+    public Map<String, String> cleanFirstPages(Site site) {
+        Map<String, List<String>> pages = firstPages.remove(site.getId());
+        Map<Long, AtomicInteger> counters = blockPages.get(site.getId());
+        if (pages == null || counters == null) {
+            return Map.of();
+        }
+        Map<String, String> cleaned = new LinkedHashMap<>();
+        synchronized (pages) {
+            pages.forEach((url, blocks) -> {
+                List<String> content = new ArrayList<>();
+                for (String block : blocks) {
+                    AtomicInteger counter = counters.get(hash(block));
+                    if (counter == null || counter.get() <= contentSettings.getRepeatedBlockPages()) {
+                        content.add(block);
+                    }
+                }
+                if (content.size() < blocks.size()) {
+                    cleaned.put(url, String.join(" ", content));
+                }
+            });
+        }
+        return cleaned;
+    }
+
+    /** Сохраняет хеши блоков шаблона сайта, чтобы после перезапуска не индексировать шаблон заново. */
+    @EventListener
+    public void onSiteIndexed(SiteIndexedEvent event) {
+        Map<Long, AtomicInteger> counters = blockPages.get(event.getSiteId());
+        if (counters == null) {
+            return;
+        }
+        List<Long> templates = new ArrayList<>();
+        counters.forEach((hash, counter) -> {
+            if (counter.get() > contentSettings.getRepeatedBlockPages()) {
+                templates.add(hash);
+            }
+        });
+        Path file = templateFile(event.getSiteUrl());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(templates.size());
+                for (long hash : templates) {
+                    out.writeLong(hash);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.debug("Сохранено {} блоков шаблона сайта {}", templates.size(), event.getSiteUrl());
+        } catch (IOException e) {
+            logger.error("Не удалось сохранить блоки шаблона сайта {}: {}", event.getSiteUrl(), e.getMessage());
+        }
+    }
+
+    private String joinContentBlocks(Site site, String url, List<String> blocks) {
+        Map<Long, AtomicInteger> pages = blockPages.computeIfAbsent(site.getId(), id -> loadTemplates(site.getUrl()));
+        rememberFirstPage(site, url, blocks);
+        Map<Long, Boolean> templateOnPage = new HashMap<>();
+        StringBuilder text = new StringBuilder();
+        int dropped = 0;
+        for (String block : blocks) {
+            long hash = hash(block);
+            Boolean template = templateOnPage.get(hash);
+            if (template == null) {
+                AtomicInteger counter = pages.get(hash);
+                if (counter == null && pages.size() < contentSettings.getMaxTrackedBlocks()) {
+                    counter = pages.computeIfAbsent(hash, key -> new AtomicInteger());
+                }
+                template = counter != null && counter.getAndIncrement() >= contentSettings.getRepeatedBlockPages();
+                templateOnPage.put(hash, template);
+            }
+            if (template) {
+                dropped++;
+                continue;
+            }
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(block);
+        }
+        if (dropped > 0) {
+            logger.debug("Отброшено {} повторяющихся блоков из {} на странице сайта {}", dropped, blocks.size(), site.getUrl());
+        }
+        return text.toString();
+    }
+
+    /** Запоминает блоки одной из первых N страниц сайта для {@link #cleanFirstPages}. */
+    private void rememberFirstPage(Site site, String url, List<String> blocks) {
+        Map<String, List<String>> pages = firstPages.computeIfAbsent(site.getId(), id -> new LinkedHashMap<>());
+        synchronized (pages) {
+            if (pages.size() < contentSettings.getRepeatedBlockPages()) {
+                pages.putIfAbsent(url, blocks);
+            }
+        }
+    }
+
+    /**
+     * Счётчики блоков сайта, засеянные сохранёнными блоками шаблона: такие блоки отбрасываются сразу
+     * и остаются шаблоном, даже если повторный обход их не встретит.
+     */
+    private Map<Long, AtomicInteger> loadTemplates(String siteUrl) {
+        Map<Long, AtomicInteger> counters = new ConcurrentHashMap<>();
+        Path file = templateFile(siteUrl);
+        if (!Files.exists(file)) {
+            return counters;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                counters.put(in.readLong(), new AtomicInteger(contentSettings.getRepeatedBlockPages() + 1));
+            }
+            logger.info("Загружено {} блоков шаблона сайта {}", count, siteUrl);
+        } catch (IOException e) {
+            logger.error("Не удалось прочитать блоки шаблона сайта {}: {}", siteUrl, e.getMessage());
+        }
+        return counters;
+    }
+
+    private Path templateFile(String siteUrl) {
+        return Paths.get(contentSettings.getTemplateDirectory(),
+                URI.create(siteUrl).getHost() + "-" + Long.toHexString(hash(siteUrl)) + ".blocks");
+    }
+
+    private Optional<Evaluator> selectorOf(Site site) {
+        return siteSelectors.computeIfAbsent(site.getUrl(), url -> {
+            List<String> selectors = sitesList.getSites() == null ? List.of() : sitesList.getSites().stream()
+                    .filter(configSite -> configSite.getUrl().equals(url))
+                    .findFirst()
+                    .map(ConfigSite::getExcludeSelectors)
+                    .orElse(List.of());
+            if (selectors == null || selectors.isEmpty()) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(QueryParser.parse(String.join(", ", selectors)));
+            } catch (Exception e) {
+                logger.error("Некорректные селекторы исключения для сайта {}: {}", url, e.getMessage());
+                return Optional.empty();
+            }
+        });
+    }
+
+    private static void endBlock(List<String> blocks, StringBuilder block) {
+        int length = block.length();
+        if (length > 0 && block.charAt(length - 1) == ' ') {
+            block.setLength(length - 1);
+        }
+        if (block.length() > 0) {
+            blocks.add(block.toString());
+            block.setLength(0);
+        }
+    }
+
+    /** Добавляет текст, сворачивая пробельные символы в один пробел, как {@link Element#text()}. */
+    private static void appendNormalized(StringBuilder block, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || c == '\u00a0') {
+                if (block.length() > 0 && block.charAt(block.length() - 1) != ' ') {
+                    block.append(' ');
+                }
+            } else {
+                block.append(c);
+            }
+        }
+    }
+
+    /** 64-битный FNV-1a: 32-битного hashCode недостаточно для сотен тысяч блоков. */
+    private static long hash(String block) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < block.length(); i++) {
+            hash ^= block.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
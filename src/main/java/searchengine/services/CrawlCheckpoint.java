@@ -0,0 +1,215 @@
+package searchengine.services;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+import searchengine.model.Site;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Периодически сохраняет очередь и множество посещённых адресов идущих обходов в
+ * {@link CrawlSettings#getCheckpointDirectory()}, чтобы прерванный остановкой, сбоем или перезапуском
+ * обход можно было продолжить. Адрес остаётся в очереди, пока его страница не сохранена и все найденные
+ * на ней ссылки не поставлены в очередь; обе структуры копируются под монитором множества посещённых
+ * адресов, под которым обход их и меняет, поэтому снимок всегда согласован.
+ */
+@Component
+public class CrawlCheckpoint {
+    private static final Logger logger = LoggerFactory.getLogger(CrawlCheckpoint.class);
+    private static final int MAGIC = 0x434B5054;
+    private static final int VERSION = 2;
+
+    private final CrawlSettings crawlSettings;
+    private final Map<Integer, CrawlState> crawls = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public CrawlCheckpoint(CrawlSettings crawlSettings, @Qualifier("checkpointScheduler") ScheduledExecutorService scheduler) {
+        this.crawlSettings = crawlSettings;
+        this.scheduler = scheduler;
+        long interval = Math.max(crawlSettings.getCheckpointIntervalSeconds(), 1);
+        scheduler.scheduleWithFixedDelay(this::saveAll, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /** Начинает отслеживать обход сайта; {@code pending} — адреса, с которых он начинается. */
+    public void begin(Site site, Set<String> visitedUrls, Collection<String> pending) {
+        CrawlState state = new CrawlState(site.getUrl(), visitedUrls);
+        synchronized (visitedUrls) {
+            state.pending.addAll(pending);
+        }
+        crawls.put(site.getId(), state);
+    }
+
+    /** Адрес поставлен в очередь; вызывается под монитором множества посещённых адресов. */
+    public void submitted(Site site, String url) {
+        CrawlState state = crawls.get(site.getId());
+        if (state != null) {
+            state.pending.add(url);
+        }
+    }
+
+    /** Страница обработана, а её ссылки уже в очереди. */
+    public void finished(Site site, String url) {
+        CrawlState state = crawls.get(site.getId());
+        if (state != null) {
+            synchronized (state.visited) {
+                state.pending.remove(url);
+            }
+        }
+    }
+
+    /** Завершает отслеживание: законченный обход удаляет свою контрольную точку, прерванный сохраняет её. */
+    public void end(Site site, boolean completed) {
+        CrawlState state = crawls.remove(site.getId());
+        if (state == null) {
+            return;
+        }
+        if (completed) {
+            try {
+                Files.deleteIfExists(fileOf(state.siteUrl));
+            } catch (IOException e) {
+                logger.warn("Не удалось удалить контрольную точку обхода {}: {}", state.siteUrl, e.getMessage());
+            }
+        } else {
+            save(state);
+        }
+    }
+
+    public Optional<CrawlFrontier> load(String siteUrl) {
+        Path file = fileOf(siteUrl);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger.warn("Файл {} не является контрольной точкой обхода", file);
+                return Optional.empty();
+            }
+            String savedUrl = readString(in);
+            Instant savedAt = Instant.ofEpochMilli(in.readLong());
+            int visitedCount = in.readInt();
+            Set<String> visited = new HashSet<>(visitedCount * 2);
+            for (int i = 0; i < visitedCount; i++) {
+                visited.add(readString(in));
+            }
+            int pendingCount = in.readInt();
+            List<String> pending = new ArrayList<>(pendingCount);
+            for (int i = 0; i < pendingCount; i++) {
+                pending.add(readString(in));
+            }
+            return Optional.of(new CrawlFrontier(savedUrl, savedAt, visited, pending));
+        } catch (IOException e) {
+            logger.error("Не удалось прочитать контрольную точку {}: {}", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /** При остановке приложения сохраняет все идущие обходы. */
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        saveAll();
+    }
+
+    private void saveAll() {
+        for (CrawlState state : crawls.values()) {
+            save(state);
+        }
+    }
+
+    private void save(CrawlState state) {
+        List<String> visited;
+        List<String> pending;
+        synchronized (state.visited) {
+            visited = new ArrayList<>(state.visited);
+            pending = new ArrayList<>(state.pending);
+        }
+        Path file = fileOf(state.siteUrl);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, state.siteUrl);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(visited.size());
+                for (String url : visited) {
+                    writeString(out, url);
+                }
+                out.writeInt(pending.size());
+                for (String url : pending) {
+                    writeString(out, url);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.debug("Контрольная точка обхода {}: {} посещено, {} в очереди", state.siteUrl, visited.size(), pending.size());
+        } catch (IOException e) {
+            logger.error("Не удалось сохранить контрольную точку обхода {}: {}", state.siteUrl, e.getMessage());
+        }
+    }
+
+    /** Имя файла — хост и хеш полного адреса: сайты на одном хосте с разными путями не затирают друг друга. */
+    private Path fileOf(String siteUrl) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(siteUrl.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        String name = URI.create(siteUrl).getHost() + "-" + HexFormat.of().formatHex(digest, 0, 8) + ".ckpt";
+        return Paths.get(crawlSettings.getCheckpointDirectory(), name);
+    }
+
+    /** Строка — int длина в байтах UTF-8 и сами байты; writeUTF не годится для адресов длиннее 64 КБ. */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class CrawlState {
+        private final String siteUrl;
+        private final Set<String> visited;
+        private final Set<String> pending = new HashSet<>();
+
+        private CrawlState(String siteUrl, Set<String> visited) {
+            this.siteUrl = siteUrl;
+            this.visited = visited;
+        }
+    }
+}
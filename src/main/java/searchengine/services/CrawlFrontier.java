@@ -0,0 +1,19 @@
+package searchengine.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Сохранённое состояние обхода сайта: посещённые адреса и пути и адреса, обработка которых не завершена.
+ */
+@Getter
+@AllArgsConstructor
+public class CrawlFrontier {
+    private final String siteUrl;
+    private final Instant savedAt;
+    private final Set<String> visited;
+    private final List<String> pending;
+}
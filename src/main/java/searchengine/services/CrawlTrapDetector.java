@@ -0,0 +1,249 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+import searchengine.dto.statistics.CrawlTrapItem;
+import searchengine.model.Site;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Распознаёт ловушки обхода — календари, фильтры, сессионные параметры и подобные бесконечные пространства адресов.
+ * Адреса группируются по шаблону пути (см. {@link #templateOf(String)}); для каждого шаблона считается,
+ * сколько новых лемм сайта и новых адресов других шаблонов приносят его страницы. Шаблон, который за окно из
+ * {@link CrawlSettings#getTemplateWindow()} страниц дал мало и того и другого и заметно меньше, чем сайт
+ * в среднем за последнее время, ограничивается: загружается лишь каждый {@link CrawlSettings#getThrottleRatio()}-й
+ * его адрес. Если и после этого польза не растёт или ограниченный шаблон исчерпал
+ * {@link CrawlSettings#getMaxPagesPerTemplate()}, он останавливается.
+ */
+@Component
+public class CrawlTrapDetector {
+    private static final Logger logger = LoggerFactory.getLogger(CrawlTrapDetector.class);
+    private static final int MAX_PLAIN_SEGMENT = 40;
+    private static final int SITE_WINDOWS = 10;
+
+    enum Status { ACTIVE, THROTTLED, STOPPED }
+
+    private final CrawlSettings crawlSettings;
+    private final Map<Integer, SiteTemplates> sites = new ConcurrentHashMap<>();
+
+    public CrawlTrapDetector(CrawlSettings crawlSettings) {
+        this.crawlSettings = crawlSettings;
+    }
+
+    /** Можно ли загружать адрес; учитывает его в бюджете шаблона. */
+    public boolean admit(Site site, String url) {
+        if (!crawlSettings.isTrapDetection()) {
+            return true;
+        }
+        SiteTemplates templates = templatesOf(site);
+        String template = templateOf(url);
+        TemplateStats stats = templates.stats.computeIfAbsent(template, key -> new TemplateStats());
+        synchronized (stats) {
+            if (stats.status == Status.STOPPED) {
+                return false;
+            }
+            if (stats.status == Status.THROTTLED && stats.pages >= crawlSettings.getMaxPagesPerTemplate()) {
+                stop(site, template, stats, "исчерпан лимит страниц");
+                return false;
+            }
+            if (stats.status == Status.THROTTLED && stats.candidates++ % crawlSettings.getThrottleRatio() != 0) {
+                return false;
+            }
+            stats.pages++;
+            return true;
+        }
+    }
+
+    /** Учитывает сохранённую страницу и число новых для сайта лемм на ней. */
+    public void recordPage(Site site, String url, int newLemmas) {
+        if (!crawlSettings.isTrapDetection()) {
+            return;
+        }
+        SiteTemplates templates = templatesOf(site);
+        String template = templateOf(url);
+        TemplateStats stats = templates.stats.computeIfAbsent(template, key -> new TemplateStats());
+        int newUrls;
+        synchronized (stats) {
+            newUrls = stats.pendingNewUrls;
+            stats.pendingNewUrls = 0;
+        }
+        double[] siteAverage = templates.recordPage(newLemmas, newUrls);
+        synchronized (stats) {
+            stats.newLemmas += newLemmas;
+            stats.newUrls += newUrls;
+            stats.windowPages++;
+            stats.windowNewLemmas += newLemmas;
+            stats.windowNewUrls += newUrls;
+            if (stats.windowPages < crawlSettings.getTemplateWindow()) {
+                return;
+            }
+            double average = (double) stats.windowNewLemmas / stats.windowPages;
+            double urlAverage = (double) stats.windowNewUrls / stats.windowPages;
+            stats.windowPages = 0;
+            stats.windowNewLemmas = 0;
+            stats.windowNewUrls = 0;
+            boolean unproductive = average < crawlSettings.getMinNewLemmasPerPage()
+                    && average < siteAverage[0] * crawlSettings.getMinYieldRatio()
+                    && urlAverage < crawlSettings.getMinNewUrlsPerPage()
+                    && urlAverage < siteAverage[1] * crawlSettings.getMinYieldRatio();
+            if (!unproductive) {
+                if (stats.status == Status.THROTTLED) {
+                    stats.status = Status.ACTIVE;
+                    logger.info("Шаблон {} сайта {} снова загружается полностью", template, site.getUrl());
+                }
+            } else if (stats.status == Status.ACTIVE) {
+                stats.status = Status.THROTTLED;
+                logger.warn("Шаблон {} сайта {} ограничен: на страницу {} новых лемм и {} новых адресов при среднем по сайту {} и {}",
+                        template, site.getUrl(), String.format("%.2f", average), String.format("%.2f", urlAverage),
+                        String.format("%.2f", siteAverage[0]), String.format("%.2f", siteAverage[1]));
+            } else if (stats.status == Status.THROTTLED) {
+                stop(site, template, stats, "мало новых лемм и адресов");
+            }
+        }
+    }
+
+    /**
+     * Учитывает адреса, впервые найденные на странице url. В пользу шаблона идут только адреса других шаблонов:
+     * календарь или фильтр, порождающий новые адреса лишь самого себя, полезным от этого не становится.
+     * Засчитываются вместе со следующей сохранённой страницей шаблона.
+     */
+    public void recordLinks(Site site, String url, List<String> newUrls) {
+        if (!crawlSettings.isTrapDetection() || newUrls.isEmpty()) {
+            return;
+        }
+        String template = templateOf(url);
+        int count = 0;
+        for (String newUrl : newUrls) {
+            if (!templateOf(newUrl).equals(template)) {
+                count++;
+            }
+        }
+        TemplateStats stats = templatesOf(site).stats.computeIfAbsent(template, key -> new TemplateStats());
+        synchronized (stats) {
+            stats.pendingNewUrls += count;
+        }
+    }
+
+    /** Ограниченные и остановленные шаблоны сайта, начиная с самых больших. */
+    public List<CrawlTrapItem> report(int siteId) {
+        SiteTemplates templates = sites.get(siteId);
+        if (templates == null) {
+            return List.of();
+        }
+        List<CrawlTrapItem> items = new ArrayList<>();
+        templates.stats.forEach((template, stats) -> {
+            synchronized (stats) {
+                if (stats.status != Status.ACTIVE) {
+                    items.add(new CrawlTrapItem(template, stats.status.name(), stats.pages, stats.newLemmas, stats.newUrls));
+                }
+            }
+        });
+        items.sort(Comparator.comparingInt(CrawlTrapItem::getPages).reversed());
+        return items;
+    }
+
+    public void forgetSite(int siteId) {
+        sites.remove(siteId);
+    }
+
+    /**
+     * Шаблон адреса: сегменты пути, похожие на идентификаторы (с цифрами или очень длинные), заменяются на *,
+     * у параметров запроса остаются только отсортированные имена. Остальные сегменты, включая последний,
+     * сохраняются: страницы с обычными адресами не сливаются в один шаблон.
+     * Например, /news/2024/05/some-title?page=3&amp;sort=asc превращается в /news/&#42;/&#42;/some-title?page&amp;sort.
+     */
+    static String templateOf(String url) {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+        String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+        String[] segments = path.split("/", -1);
+        StringBuilder template = new StringBuilder();
+        int last = segments.length - 1;
+        while (last > 0 && segments[last].isEmpty()) {
+            last--;
+        }
+        for (int i = 1; i <= last; i++) {
+            String segment = segments[i];
+            template.append('/').append(isVariable(segment) ? "*" : segment);
+        }
+        if (last < segments.length - 1) {
+            template.append('/');
+        }
+        String query = uri.getRawQuery();
+        if (query != null && !query.isEmpty()) {
+            String[] names = Arrays.stream(query.split("&"))
+                    .map(parameter -> parameter.contains("=") ? parameter.substring(0, parameter.indexOf('=')) : parameter)
+                    .distinct()
+                    .sorted()
+                    .toArray(String[]::new);
+            template.append('?').append(String.join("&", names));
+        }
+        return template.length() == 0 ? "/" : template.toString();
+    }
+
+    private static boolean isVariable(String segment) {
+        if (segment.length() > MAX_PLAIN_SEGMENT) {
+            return true;
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            if (Character.isDigit(segment.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private SiteTemplates templatesOf(Site site) {
+        return sites.computeIfAbsent(site.getId(), id -> new SiteTemplates());
+    }
+
+    private void stop(Site site, String template, TemplateStats stats, String reason) {
+        stats.status = Status.STOPPED;
+        logger.warn("Обход по шаблону {} сайта {} остановлен ({}): загружено {} страниц, новых лемм {}",
+                template, site.getUrl(), reason, stats.pages, stats.newLemmas);
+    }
+
+    private static class TemplateStats {
+        private Status status = Status.ACTIVE;
+        private int pages;
+        private int candidates;
+        private long newLemmas;
+        private long newUrls;
+        private int pendingNewUrls;
+        private int windowPages;
+        private long windowNewLemmas;
+        private long windowNewUrls;
+    }
+
+    private class SiteTemplates {
+        private final Map<String, TemplateStats> stats = new ConcurrentHashMap<>();
+        private long pages;
+        private double newLemmas;
+        private double newUrls;
+
+        /**
+         * Среднее новых лемм и новых адресов на страницу по сайту за последние страницы (экспоненциальное,
+         * примерно за {@link #SITE_WINDOWS} окон шаблона). Новых лемм становится меньше по мере наполнения
+         * словаря на всех шаблонах сразу, поэтому шаблон сравнивается с сайтом за то же время, а не с начала обхода.
+         */
+        synchronized double[] recordPage(int pageNewLemmas, int pageNewUrls) {
+            pages++;
+            long horizon = Math.min(pages, (long) SITE_WINDOWS * Math.max(crawlSettings.getTemplateWindow(), 1));
+            newLemmas += (pageNewLemmas - newLemmas) / horizon;
+            newUrls += (pageNewUrls - newUrls) / horizon;
+            return new double[]{newLemmas, newUrls};
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.repository.PageRepository;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Статистика документов для ранжирования: длина каждой страницы в леммах и число страниц
+ * и суммарная длина по сайтам. Длины хранятся в массиве, индексированном id страницы.
+ * Заполняется при индексации и один раз подгружается из таблицы page при первом обращении.
+ * Учитываются только страницы с известной длиной (token_count задан) — и при загрузке, и при индексации.
+ */
+@Component
+public class DocumentStatistics {
+    private static final Logger logger = LoggerFactory.getLogger(DocumentStatistics.class);
+
+    private final PageRepository pageRepository;
+    private final Map<Integer, SiteStatistics> sites = new ConcurrentHashMap<>();
+    private final BitSet knownPages = new BitSet();
+    private volatile int[] tokenCounts = new int[0];
+    private volatile boolean loaded = false;
+
+    public DocumentStatistics(PageRepository pageRepository) {
+        this.pageRepository = pageRepository;
+    }
+
+    public void recordPage(int siteId, int pageId, int tokenCount) {
+        ensureLoaded();
+        synchronized (this) {
+            addPage(siteId, pageId, tokenCount);
+        }
+    }
+
+    /** Забывает сайт вместе с длинами его страниц, чтобы их id можно было учесть заново. */
+    public synchronized void removeSite(int siteId) {
+        SiteStatistics statistics = sites.remove(siteId);
+        if (statistics == null) {
+            return;
+        }
+        int[] counts = tokenCounts;
+        for (int pageId = statistics.pages.nextSetBit(0); pageId >= 0; pageId = statistics.pages.nextSetBit(pageId + 1)) {
+            knownPages.clear(pageId);
+            counts[pageId] = 0;
+        }
+    }
+
+    public void removePage(int siteId, int pageId) {
+        ensureLoaded();
+        synchronized (this) {
+            if (!knownPages.get(pageId)) {
+                return;
+            }
+            knownPages.clear(pageId);
+            int tokenCount = tokenCounts[pageId];
+            tokenCounts[pageId] = 0;
+            SiteStatistics statistics = sites.get(siteId);
+            if (statistics != null) {
+                statistics.pages.clear(pageId);
+                statistics.pageCount--;
+                if (tokenCount > 0) {
+                    statistics.measuredPages--;
+                    statistics.totalTokens -= tokenCount;
+                }
+            }
+        }
+    }
+
+    public int tokenCount(int pageId) {
+        ensureLoaded();
+        int[] counts = tokenCounts;
+        return pageId < counts.length ? counts[pageId] : 0;
+    }
+
+    public int pageCount(int siteId) {
+        ensureLoaded();
+        SiteStatistics statistics = sites.get(siteId);
+        return statistics == null ? 0 : statistics.pageCount;
+    }
+
+    public double averageTokenCount(int siteId) {
+        ensureLoaded();
+        SiteStatistics statistics = sites.get(siteId);
+        if (statistics == null || statistics.measuredPages == 0) {
+            return 0;
+        }
+        return (double) statistics.totalTokens / statistics.measuredPages;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            int pages = 0;
+            for (Object[] row : pageRepository.findTokenCounts()) {
+                addPage((Integer) row[1], (Integer) row[0], (Integer) row[2]);
+                pages++;
+            }
+            loaded = true;
+            logger.info("Загружена статистика документов: {} страниц, {} сайтов", pages, sites.size());
+        }
+    }
+
+    private void addPage(int siteId, int pageId, int tokenCount) {
+        if (knownPages.get(pageId)) {
+            return;
+        }
+        knownPages.set(pageId);
+
+        int[] counts = tokenCounts;
+        if (pageId >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(pageId + 1, counts.length * 2));
+        }
+        counts[pageId] = tokenCount;
+        tokenCounts = counts;
+
+        SiteStatistics statistics = sites.computeIfAbsent(siteId, id -> new SiteStatistics());
+        statistics.pages.set(pageId);
+        statistics.pageCount++;
+        if (tokenCount > 0) {
+            statistics.measuredPages++;
+            statistics.totalTokens += tokenCount;
+        }
+    }
+
+    private static class SiteStatistics {
+        private final BitSet pages = new BitSet();
+        private volatile int pageCount;
+        private volatile int measuredPages;
+        private volatile long totalTokens;
+    }
+}
@@ -0,0 +1,152 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+import searchengine.dto.statistics.HostConcurrencyItem;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Ограничивает число одновременных запросов к каждому хосту по схеме AIMD. Пока ответы успешны и задержка
+ * не выросла больше чем в {@link CrawlSettings#getLatencyTolerance()} раз от лучшей замеченной, лимит
+ * растёт примерно на единицу за каждый «раунд» запросов. При ответах 429/503, ошибках соединения и росте
+ * задержки лимит умножается на {@link CrawlSettings#getBackoffFactor()}, но не чаще раза за время ответа.
+ * Ожидание свободного места оформлено через {@link ForkJoinPool#managedBlock}, чтобы пул обхода мог
+ * временно добавить потоки для других хостов.
+ */
+@Component
+public class HostConcurrencyController {
+    private static final Logger logger = LoggerFactory.getLogger(HostConcurrencyController.class);
+    private static final double LATENCY_SMOOTHING = 0.2;
+    private static final double BASELINE_DRIFT = 0.01;
+
+    private final CrawlSettings crawlSettings;
+    private final Map<String, HostLimiter> hosts = new ConcurrentHashMap<>();
+
+    public HostConcurrencyController(CrawlSettings crawlSettings) {
+        this.crawlSettings = crawlSettings;
+    }
+
+    /** Ждёт, пока к хосту можно отправить ещё один запрос; после ответа обязательно вызвать {@link #release}. */
+    public void acquire(String host) throws InterruptedException {
+        HostLimiter limiter = hosts.computeIfAbsent(host, HostLimiter::new);
+        ForkJoinPool.managedBlock(limiter.new Permit());
+    }
+
+    /**
+     * Освобождает место и учитывает итог запроса.
+     * @param statusCode HTTP-статус ответа или -1, если ответа не было (тайм-аут, обрыв соединения)
+     */
+    public void release(String host, int statusCode, long latencyMillis) {
+        HostLimiter limiter = hosts.get(host);
+        if (limiter != null) {
+            limiter.release(statusCode, latencyMillis);
+        }
+    }
+
+    /** Освобождает место без запроса, например если индексация остановлена во время ожидания. */
+    public void abandon(String host) {
+        HostLimiter limiter = hosts.get(host);
+        if (limiter != null) {
+            limiter.abandon();
+        }
+    }
+
+    public List<HostConcurrencyItem> report() {
+        List<HostConcurrencyItem> items = new ArrayList<>();
+        for (HostLimiter limiter : hosts.values()) {
+            synchronized (limiter) {
+                items.add(new HostConcurrencyItem(limiter.host, limiter.permits(), limiter.inFlight,
+                        Math.round(limiter.latency), limiter.backoffs));
+            }
+        }
+        items.sort(Comparator.comparing(HostConcurrencyItem::getHost));
+        return items;
+    }
+
+    private final class HostLimiter {
+        private final String host;
+        private double limit = crawlSettings.getInitialConcurrency();
+        private int inFlight;
+        private double latency = -1;
+        private double baselineLatency = -1;
+        private long lastBackoff;
+        private long backoffs;
+
+        private HostLimiter(String host) {
+            this.host = host;
+        }
+
+        private int permits() {
+            return Math.max(1, (int) limit);
+        }
+
+        private synchronized boolean tryAcquire() {
+            if (inFlight < permits()) {
+                inFlight++;
+                return true;
+            }
+            return false;
+        }
+
+        private synchronized void release(int statusCode, long latencyMillis) {
+            inFlight--;
+            boolean responded = statusCode > 0;
+            if (responded) {
+                latency = latency < 0 ? latencyMillis : latency + LATENCY_SMOOTHING * (latencyMillis - latency);
+                baselineLatency = baselineLatency < 0 || latency < baselineLatency
+                        ? latency
+                        : baselineLatency + BASELINE_DRIFT * (latency - baselineLatency);
+            }
+
+            if (!responded || statusCode == 429 || statusCode == 503) {
+                backOff("ответ " + (responded ? statusCode : "не получен"));
+            } else if (latency > baselineLatency * crawlSettings.getLatencyTolerance()) {
+                backOff("задержка выросла до " + Math.round(latency) + " мс");
+            } else if (statusCode < 500) {
+                limit = Math.min(crawlSettings.getMaxConcurrency(), limit + 1 / limit);
+            }
+            notifyAll();
+        }
+
+        private synchronized void abandon() {
+            inFlight--;
+            notifyAll();
+        }
+
+        private void backOff(String reason) {
+            long now = System.currentTimeMillis();
+            if (now - lastBackoff < Math.max(latency, 1)) {
+                return;
+            }
+            lastBackoff = now;
+            backoffs++;
+            double previous = limit;
+            limit = Math.max(1, limit * crawlSettings.getBackoffFactor());
+            logger.info("Хост {}: {}, одновременных запросов {} → {}", host, reason, (int) previous, permits());
+        }
+
+        private final class Permit implements ForkJoinPool.ManagedBlocker {
+            @Override
+            public boolean block() throws InterruptedException {
+                synchronized (HostLimiter.this) {
+                    while (!tryAcquire()) {
+                        HostLimiter.this.wait();
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return tryAcquire();
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package searchengine.services;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import searchengine.config.SitesList;
 import searchengine.model.IndexingStatus;
@@ -13,7 +14,17 @@ import java.util.*;
 import searchengine.repository.LemmaRepository;
 import searchengine.repository.IndexRepository;
 import java.util.concurrent.*;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.utils.LemmaProcessor;
+import searchengine.model.Page;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Instant;
+import java.time.ZoneId;
 
 @Service
 public class IndexingService {
@@ -25,26 +36,126 @@ public class IndexingService {
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
+    private final DocumentStatistics documentStatistics;
+    private final PostingsReplica postingsReplica;
+    private final LuceneIndex luceneIndex;
+    private final PageArchive pageArchive;
+    private final LemmaProcessor lemmaProcessor;
+    private final ContentExtractor contentExtractor;
+    private final CrawlTrapDetector crawlTrapDetector;
+    private final SitemapReader sitemapReader;
+    private final HostConcurrencyController hostConcurrency;
+    private final CrawlCheckpoint crawlCheckpoint;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
     private final Set<CompletableFuture<Void>> runningTasks = Collections.synchronizedSet(new HashSet<>());
     private volatile boolean indexingInProgress = false;
+    private boolean exclusiveOperation = false;
     private ExecutorService executorService;
     private ForkJoinPool forkJoinPool;
 
-    public IndexingService(SitesList sitesList,LemmaRepository lemmaRepository,IndexRepository indexRepository, SiteRepository siteRepository,  PageRepository pageRepository ) {
+    public IndexingService(SitesList sitesList,LemmaRepository lemmaRepository,IndexRepository indexRepository, SiteRepository siteRepository,  PageRepository pageRepository, DocumentStatistics documentStatistics, PostingsReplica postingsReplica, LuceneIndex luceneIndex, PageArchive pageArchive, LemmaProcessor lemmaProcessor, ContentExtractor contentExtractor, CrawlTrapDetector crawlTrapDetector, SitemapReader sitemapReader, HostConcurrencyController hostConcurrency, CrawlCheckpoint crawlCheckpoint, ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager) {
         this.sitesList = sitesList;
         this.siteRepository = siteRepository;
         this.pageRepository = pageRepository;
         this.indexRepository = indexRepository;
         this.lemmaRepository = lemmaRepository;
+        this.documentStatistics = documentStatistics;
+        this.postingsReplica = postingsReplica;
+        this.luceneIndex = luceneIndex;
+        this.pageArchive = pageArchive;
+        this.lemmaProcessor = lemmaProcessor;
+        this.contentExtractor = contentExtractor;
+        this.crawlTrapDetector = crawlTrapDetector;
+        this.sitemapReader = sitemapReader;
+        this.hostConcurrency = hostConcurrency;
+        this.crawlCheckpoint = crawlCheckpoint;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public DocumentStatistics getDocumentStatistics() {
+        return documentStatistics;
+    }
+
+    public PostingsReplica getPostingsReplica() {
+        return postingsReplica;
+    }
+
+    public LuceneIndex getLuceneIndex() {
+        return luceneIndex;
+    }
+
+    public PageArchive getPageArchive() {
+        return pageArchive;
+    }
+
+    public LemmaProcessor getLemmaProcessor() {
+        return lemmaProcessor;
+    }
+
+    public ContentExtractor getContentExtractor() {
+        return contentExtractor;
+    }
 
+    public CrawlTrapDetector getCrawlTrapDetector() {
+        return crawlTrapDetector;
+    }
+
+    public HostConcurrencyController getHostConcurrency() {
+        return hostConcurrency;
+    }
+
+    public CrawlCheckpoint getCrawlCheckpoint() {
+        return crawlCheckpoint;
     }
 
     public synchronized boolean isIndexingInProgress() {
         return indexingInProgress;
     }
 
+    /**
+     * Занята ли индексация: идёт обход или операция, заменяющая данные сайта целиком
+     * (переиндексация из архива, загрузка снимка). Пока занято, никакая из них не запускается.
+     */
+    public synchronized boolean isBusy() {
+        return indexingInProgress || exclusiveOperation;
+    }
+
+    /** Занимает индексацию под операцию, заменяющую данные сайта; снимается {@link #endExclusive()}. */
+    public synchronized void beginExclusive() {
+        if (isBusy()) {
+            throw new IllegalStateException("Индексация уже запущена");
+        }
+        exclusiveOperation = true;
+    }
+
+    public synchronized void endExclusive() {
+        exclusiveOperation = false;
+    }
+
     public synchronized void startFullIndexing() {
-        if (indexingInProgress) {
+        start(() -> performIndexing(false));
+    }
+
+    /**
+     * Продолжает прерванные обходы с сохранённых контрольных точек, не удаляя уже проиндексированные страницы.
+     * Сайты без контрольной точки индексируются заново, если их индексация не была завершена.
+     */
+    public synchronized void startResume() {
+        start(() -> performIndexing(true));
+    }
+
+    /**
+     * Повторный обход уже проиндексированных сайтов: загружаются только страницы из sitemap, изменённые
+     * (по lastmod) после прошлой индексации, и ещё не известные страницы; остальные остаются как есть.
+     */
+    public synchronized void startRecrawl() {
+        start(this::performRecrawl);
+    }
+
+    private void start(Runnable indexing) {
+        if (isBusy()) {
             logger.warn("Индексация уже запущена. Перезапуск невозможен.");
             return;
         }
@@ -57,7 +168,7 @@ public class IndexingService {
         executorService.submit(() -> {
             try {
                 logger.info("Выполняем индексацию...");
-                performIndexing();
+                indexing.run();
             } catch (Exception e) {
                 logger.error("Ошибка во время индексации: ", e);
             } finally {
@@ -109,7 +220,7 @@ public class IndexingService {
         System.out.println("Индексация остановлена.");
     }
 
-    private void performIndexing() {
+    private void performIndexing(boolean resume) {
         List<searchengine.config.ConfigSite> sites = sitesList.getSites();
         if (sites == null || sites.isEmpty()) {
             logger.warn("Список сайтов для индексации пуст.");
@@ -122,14 +233,22 @@ public class IndexingService {
                 executorService.submit(() -> {
                     logger.info("Индексация сайта: {} ({})", site.getName(), site.getUrl());
                     try {
-                        deleteSiteData(site.getUrl());
-                        searchengine.model.Site newSite = new searchengine.model.Site();
-                        newSite.setName(site.getName());
-                        newSite.setUrl(site.getUrl());
-                        newSite.setStatus(IndexingStatus.INDEXING);
-                        newSite.setStatusTime(LocalDateTime.now());
-                        siteRepository.save(newSite);
-                        crawlAndIndexPages(newSite, site.getUrl());
+                        if (!resume || !resumeCrawl(site)) {
+                            Site existing = resume ? siteRepository.findByUrl(site.getUrl()) : null;
+                            if (existing != null && existing.getStatus() == IndexingStatus.INDEXED) {
+                                logger.info("Сайт {} уже проиндексирован, продолжать нечего", site.getUrl());
+                                return;
+                            }
+                            deleteSiteData(site.getUrl());
+                            searchengine.model.Site newSite = new searchengine.model.Site();
+                            newSite.setName(site.getName());
+                            newSite.setUrl(site.getUrl());
+                            newSite.setStatus(IndexingStatus.INDEXING);
+                            newSite.setStatusTime(LocalDateTime.now());
+                            newSite.setCrawlStartTime(newSite.getStatusTime());
+                            siteRepository.save(newSite);
+                            crawlAndIndexPages(newSite, site.getUrl());
+                        }
                         if (indexingInProgress) {
                             updateSiteStatus(site.getUrl(), IndexingStatus.INDEXED);
                         } else {
@@ -139,6 +258,8 @@ public class IndexingService {
                     } catch (Exception e) {
                         updateSiteStatus(site.getUrl(), IndexingStatus.FAILED, e.getMessage());
                         logger.error("Ошибка индексации сайта {}: {}", site.getUrl(), e.getMessage());
+                    } finally {
+                        publishSiteIndexed(site.getUrl());
                     }
                 });
             }
@@ -157,6 +278,106 @@ public class IndexingService {
         }
     }
 
+    private void performRecrawl() {
+        List<searchengine.config.ConfigSite> sites = sitesList.getSites();
+        if (sites == null || sites.isEmpty()) {
+            logger.warn("Список сайтов для индексации пуст.");
+            return;
+        }
+        for (searchengine.config.ConfigSite configSite : sites) {
+            if (!indexingInProgress) {
+                return;
+            }
+            Site site = siteRepository.findByUrl(configSite.getUrl());
+            if (site == null || site.getStatus() != IndexingStatus.INDEXED) {
+                logger.warn("Сайт {} ещё не проиндексирован полностью, повторный обход пропущен", configSite.getUrl());
+                continue;
+            }
+            try {
+                LocalDateTime startedAt = LocalDateTime.now();
+                recrawlSite(site);
+                if (indexingInProgress) {
+                    recordCrawlStart(site.getUrl(), startedAt);
+                }
+                updateSiteStatus(site.getUrl(), indexingInProgress ? IndexingStatus.INDEXED : IndexingStatus.FAILED,
+                        indexingInProgress ? null : "Индексация была прервана.");
+            } catch (Exception e) {
+                updateSiteStatus(site.getUrl(), IndexingStatus.FAILED, e.getMessage());
+                logger.error("Ошибка повторного обхода сайта {}: {}", site.getUrl(), e.getMessage());
+            } finally {
+                publishSiteIndexed(site.getUrl());
+            }
+        }
+    }
+
+    /**
+     * Страницы sitemap сравниваются по lastmod с началом прошлого обхода: страница, изменённая во время него,
+     * могла быть загружена ещё до изменения. Без известного начала обхода загружаются все страницы с lastmod.
+     */
+    private void recrawlSite(Site site) {
+        Instant crawledSince = site.getCrawlStartTime() == null
+                ? Instant.MIN
+                : site.getCrawlStartTime().atZone(ZoneId.systemDefault()).toInstant();
+        List<SitemapEntry> entries = sitemapReader.read(site.getUrl());
+        updateSiteStatus(site.getUrl(), IndexingStatus.INDEXING);
+
+        Set<String> visitedUrls = new HashSet<>();
+        List<PageCrawler> tasks = new ArrayList<>();
+        int unchanged = 0;
+        for (SitemapEntry entry : entries) {
+            String path = pathOf(entry.getUrl());
+            if (path == null) {
+                logger.debug("Некорректный адрес в sitemap: {}", entry.getUrl());
+                continue;
+            }
+            List<Page> pages = pageRepository.findByPathAndSiteId(path, site.getId());
+            boolean changed = entry.getLastModified() != null && entry.getLastModified().isAfter(crawledSince);
+            if (!pages.isEmpty() && !changed) {
+                unchanged++;
+                continue;
+            }
+            visitedUrls.add(path);
+            tasks.add(newCrawler(site, entry.getUrl(), visitedUrls).replacing(pages));
+        }
+        logger.info("Повторный обход сайта {}: {} страниц изменилось или добавлено, {} без изменений",
+                site.getUrl(), tasks.size(), unchanged);
+        invokeCrawlers(site, visitedUrls, tasks, false);
+    }
+
+    /**
+     * Удаляет страницу вместе с её связями в одной транзакции; частоты её лемм уменьшаются,
+     * ставшие ненужными леммы удаляются.
+     */
+    public void deletePageData(Page page) {
+        int siteId = page.getSite().getId();
+        List<Integer> lemmaIds = transactionTemplate.execute(status -> {
+            List<Integer> pageLemmaIds = indexRepository.findLemmaIdsByPageId(page.getId());
+            indexRepository.deleteByPageId(page.getId());
+            if (!pageLemmaIds.isEmpty()) {
+                lemmaRepository.decrementFrequencies(pageLemmaIds);
+                lemmaRepository.deleteUnusedBySiteId(siteId);
+            }
+            pageRepository.delete(page);
+            return pageLemmaIds;
+        });
+        postingsReplica.removePage(page.getId(), lemmaIds);
+        documentStatistics.removePage(siteId, page.getId());
+        luceneIndex.deletePage(page.getId());
+        logger.info("Прежняя версия страницы {} удалена", page.getPath());
+    }
+
+    public void publishSiteIndexed(String url) {
+        Site site = siteRepository.findByUrl(url);
+        if (site == null) {
+            return;
+        }
+        try {
+            eventPublisher.publishEvent(new SiteIndexedEvent(site.getId(), site.getUrl()));
+        } catch (Exception e) {
+            logger.error("Ошибка обработки завершения индексации сайта {}: {}", url, e.getMessage(), e);
+        }
+    }
+
     private void updateSiteStatus(String url, IndexingStatus status) {
         updateSiteStatus(url, status, null);
     }
@@ -174,29 +395,119 @@ public class IndexingService {
         }
     }
 
+    private void recordCrawlStart(String url, LocalDateTime startedAt) {
+        Site site = siteRepository.findByUrl(url);
+        if (site != null) {
+            site.setCrawlStartTime(startedAt);
+            siteRepository.save(site);
+        }
+    }
+
+    /** Путь адреса из sitemap; null, если адрес некорректен. */
+    private static String pathOf(String url) {
+        try {
+            return URI.create(url).getPath();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Обход сайта от корня; адреса из sitemap сразу добавляются в обход, чтобы найти глубокие и ни откуда не связанные страницы. */
     private void crawlAndIndexPages(searchengine.model.Site site, String startUrl) {
+        Set<String> visitedUrls = new HashSet<>();
+        List<PageCrawler> tasks = new ArrayList<>();
+        tasks.add(newCrawler(site, startUrl, visitedUrls));
+        for (SitemapEntry entry : sitemapReader.read(startUrl)) {
+            String path = pathOf(entry.getUrl());
+            if (path == null) {
+                logger.debug("Некорректный адрес в sitemap: {}", entry.getUrl());
+            } else if (!path.isEmpty() && !path.equals("/") && visitedUrls.add(path)) {
+                tasks.add(newCrawler(site, entry.getUrl(), visitedUrls));
+            }
+        }
+        if (tasks.size() > 1) {
+            logger.info("В обход сайта {} добавлено {} адресов из sitemap", site.getUrl(), tasks.size() - 1);
+        }
+        invokeCrawlers(site, visitedUrls, tasks, true);
+    }
+
+    /** Продолжает прерванный обход сайта с контрольной точки; false, если её нет. */
+    private boolean resumeCrawl(searchengine.config.ConfigSite configSite) {
+        Site site = siteRepository.findByUrl(configSite.getUrl());
+        Optional<CrawlFrontier> frontier = crawlCheckpoint.load(configSite.getUrl());
+        if (site == null || frontier.isEmpty()) {
+            return false;
+        }
+        List<String> pending = frontier.get().getPending();
+        Set<String> visitedUrls = new HashSet<>(frontier.get().getVisited());
+        visitedUrls.removeAll(pending);
+        List<PageCrawler> tasks = new ArrayList<>();
+        for (String url : pending) {
+            tasks.add(newCrawler(site, url, visitedUrls).revisitingLinks());
+        }
+        logger.info("Обход сайта {} продолжается с контрольной точки от {}: {} адресов в очереди, {} посещено",
+                site.getUrl(), frontier.get().getSavedAt(), pending.size(), visitedUrls.size());
+        updateSiteStatus(site.getUrl(), IndexingStatus.INDEXING);
+        invokeCrawlers(site, visitedUrls, tasks, false);
+        return true;
+    }
+
+    private PageCrawler newCrawler(Site site, String url, Set<String> visitedUrls) {
+        return new PageCrawler(site, lemmaRepository, indexRepository, url, visitedUrls, pageRepository, this);
+    }
+
+    /** @param fullCrawl обход с нуля: ответы пишутся в новое поколение архива, иначе дописываются в последнее */
+    private void invokeCrawlers(Site site, Set<String> visitedUrls, List<PageCrawler> tasks, boolean fullCrawl) {
+        crawlCheckpoint.begin(site, visitedUrls, tasks.stream().map(PageCrawler::getUrl).toList());
+        boolean completed = false;
         forkJoinPool = new ForkJoinPool();
+        pageArchive.begin(site, fullCrawl);
         try {
-            forkJoinPool.invoke(new PageCrawler(
-                    site,
-                    lemmaRepository,
-                    indexRepository,
-                    startUrl,
-                    new HashSet<>(),
-                    pageRepository,
-                    this
-            ));
+            if (!tasks.isEmpty()) {
+                forkJoinPool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+            }
+            completed = indexingInProgress;
+            if (completed) {
+                cleanFirstPages(site);
+            }
         } finally {
             forkJoinPool.shutdown();
+            pageArchive.finish(site);
+            crawlCheckpoint.end(site, completed);
+        }
+    }
+
+    /** Второй проход: первые страницы сайта сохранены до того, как стало известно, какие блоки — шаблон. */
+    private void cleanFirstPages(Site site) {
+        Map<String, String> texts = contentExtractor.cleanFirstPages(site);
+        PageIndexer pageIndexer = new PageIndexer(site, pageRepository, lemmaRepository, indexRepository, this);
+        texts.forEach((url, text) -> {
+            try {
+                pageIndexer.replaceText(url, text);
+            } catch (IOException e) {
+                logger.warn("Не удалось очистить от шаблона страницу {}: {}", url, e.getMessage());
+            }
+        });
+        if (!texts.isEmpty()) {
+            logger.info("С {} первых страниц сайта {} убраны блоки шаблона", texts.size(), site.getUrl());
         }
     }
 
+    /** Удаляет данные сайта; статистика, индекс в памяти и Lucene очищаются после фиксации транзакции. */
     @Transactional
     public void deleteSiteData(String siteUrl) {
         searchengine.model.Site site = siteRepository.findByUrl(siteUrl);
         if (site != null) {
             Long siteId = (long) site.getId();
 
+            afterCommit(() -> {
+                documentStatistics.removeSite(site.getId());
+                postingsReplica.removeSite(site.getId());
+                luceneIndex.deleteSite(site.getId());
+                contentExtractor.forgetSite(site);
+                crawlTrapDetector.forgetSite(site.getId());
+            });
+
             int indexesDeleted = indexRepository.deleteBySiteId(site.getId());
 
             int lemmasDeleted = lemmaRepository.deleteBySiteId(siteId);
@@ -213,4 +524,18 @@ public class IndexingService {
             logger.warn("Сайт {} не найден в базе данных.", siteUrl);
         }
     }
+
+    /** Выполняет действие после фиксации текущей транзакции, а вне транзакции — сразу. */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
 }
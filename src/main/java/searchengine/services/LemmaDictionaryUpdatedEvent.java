@@ -0,0 +1,14 @@
+package searchengine.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Публикуется после перестроения общего словаря лемм: отсортированные леммы и их суммарные частоты по всем сайтам.
+ */
+@Getter
+@AllArgsConstructor
+public class LemmaDictionaryUpdatedEvent {
+    private final String[] lemmas;
+    private final int[] frequencies;
+}
@@ -0,0 +1,180 @@
+package searchengine.services;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.utils.IntList;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Локальный индекс Lucene, который ведётся параллельно с таблицами lemma/index. В поле lemmas пишутся
+ * уже лемматизированные слова страницы с их номерами, поэтому морфология та же, что у основного индекса,
+ * и фразовые запросы работают по тем же позициям. Включается search-settings.lucene-index или engine: lucene.
+ */
+@Component
+public class LuceneIndex {
+    public static final String PAGE_FIELD = "page";
+    public static final String SITE_FIELD = "site";
+    public static final String LEMMAS_FIELD = "lemmas";
+    private static final Logger logger = LoggerFactory.getLogger(LuceneIndex.class);
+
+    private final SearchSettings searchSettings;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+
+    public LuceneIndex(SearchSettings searchSettings) {
+        this.searchSettings = searchSettings;
+    }
+
+    public boolean isEnabled() {
+        return searchSettings.isLuceneIndex() || "lucene".equalsIgnoreCase(searchSettings.getEngine());
+    }
+
+    public void indexPage(int siteId, int pageId, Map<String, IntList> lemmaPositions) {
+        if (!isEnabled()) {
+            return;
+        }
+        Document document = new Document();
+        document.add(new StringField(PAGE_FIELD, String.valueOf(pageId), Field.Store.YES));
+        document.add(new StringField(SITE_FIELD, String.valueOf(siteId), Field.Store.NO));
+        document.add(new TextField(LEMMAS_FIELD, new LemmaTokenStream(lemmaPositions)));
+        try {
+            writer().updateDocument(new Term(PAGE_FIELD, String.valueOf(pageId)), document);
+        } catch (IOException e) {
+            logger.error("Не удалось добавить страницу {} в индекс Lucene: {}", pageId, e.getMessage());
+        }
+    }
+
+    public void deleteSite(int siteId) {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            writer().deleteDocuments(new Term(SITE_FIELD, String.valueOf(siteId)));
+        } catch (IOException e) {
+            logger.error("Не удалось удалить сайт {} из индекса Lucene: {}", siteId, e.getMessage());
+        }
+    }
+
+    public void deletePage(int pageId) {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            writer().deleteDocuments(new Term(PAGE_FIELD, String.valueOf(pageId)));
+        } catch (IOException e) {
+            logger.error("Не удалось удалить страницу {} из индекса Lucene: {}", pageId, e.getMessage());
+        }
+    }
+
+    @EventListener
+    public void onSiteIndexed(SiteIndexedEvent event) {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            writer().commit();
+            searcherManager.maybeRefresh();
+            logger.info("Индекс Lucene зафиксирован после индексации сайта {}", event.getSiteUrl());
+        } catch (IOException e) {
+            logger.error("Не удалось зафиксировать индекс Lucene: {}", e.getMessage(), e);
+        }
+    }
+
+    /** Поисковик по последнему обновлённому состоянию индекса; вернуть через {@link #release}. */
+    public IndexSearcher acquire() throws IOException {
+        writer();
+        searcherManager.maybeRefresh();
+        return searcherManager.acquire();
+    }
+
+    public void release(IndexSearcher searcher) throws IOException {
+        searcherManager.release(searcher);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            searcherManager.close();
+            writer.close();
+        } catch (IOException e) {
+            logger.error("Ошибка при закрытии индекса Lucene: {}", e.getMessage(), e);
+        }
+    }
+
+    private synchronized IndexWriter writer() throws IOException {
+        if (writer == null) {
+            IndexWriterConfig config = new IndexWriterConfig(new WhitespaceAnalyzer())
+                    .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+            writer = new IndexWriter(FSDirectory.open(Paths.get(searchSettings.getLuceneIndexPath())), config);
+            searcherManager = new SearcherManager(writer, null);
+            logger.info("Открыт индекс Lucene: {}", searchSettings.getLuceneIndexPath());
+        }
+        return writer;
+    }
+
+    /** Леммы страницы в порядке номеров слов; несколько лемм одного слова получают одну позицию. */
+    private static final class LemmaTokenStream extends TokenStream {
+        private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+        private final PositionIncrementAttribute incrementAttribute = addAttribute(PositionIncrementAttribute.class);
+        private final List<String> lemmas = new ArrayList<>();
+        private final IntList positions = new IntList();
+        private int next;
+
+        private LemmaTokenStream(Map<String, IntList> lemmaPositions) {
+            List<Map.Entry<Integer, String>> tokens = new ArrayList<>();
+            lemmaPositions.forEach((lemma, lemmaPositionList) -> {
+                for (int i = 0; i < lemmaPositionList.size(); i++) {
+                    tokens.add(Map.entry(lemmaPositionList.get(i), lemma));
+                }
+            });
+            tokens.sort(Map.Entry.<Integer, String>comparingByKey().thenComparing(Map.Entry.comparingByValue()));
+            for (Map.Entry<Integer, String> token : tokens) {
+                positions.add(token.getKey());
+                lemmas.add(token.getValue());
+            }
+        }
+
+        @Override
+        public boolean incrementToken() {
+            if (next >= lemmas.size()) {
+                return false;
+            }
+            clearAttributes();
+            termAttribute.setEmpty().append(lemmas.get(next));
+            incrementAttribute.setPositionIncrement(next == 0 ? positions.get(0) + 1 : positions.get(next) - positions.get(next - 1));
+            next++;
+            return true;
+        }
+
+        @Override
+        public void reset() throws IOException {
+            super.reset();
+            next = 0;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package searchengine.services;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import searchengine.dto.search.SearchResponse;
+import searchengine.dto.search.SearchResult;
+import searchengine.model.Site;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.SiteRepository;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Поиск по индексу Lucene (search-settings.engine: lucene). Запрос разбирается тем же {@link QueryParser},
+ * дерево переводится в запрос Lucene, оценка — BM25 Lucene; результаты строятся из базы, как и в {@link SearchServiceImpl}.
+ * Курсор здесь продолжает выдачу по номеру позиции, а не по оценке последней страницы.
+ */
+@Service
+@ConditionalOnProperty(prefix = "search-settings", name = "engine", havingValue = "lucene")
+public class LuceneSearchService implements SearchService {
+    private static final Logger logger = LoggerFactory.getLogger(LuceneSearchService.class);
+    private static final int STREAM_BATCH_SIZE = 10;
+
+    private final LuceneIndex luceneIndex;
+    private final QueryParser queryParser;
+    private final TypoCorrector typoCorrector;
+    private final SiteRepository siteRepository;
+    private final LemmaRepository lemmaRepository;
+    private final SearchResultMaterializer materializer;
+
+    public LuceneSearchService(LuceneIndex luceneIndex, QueryParser queryParser, TypoCorrector typoCorrector,
+                               SiteRepository siteRepository, LemmaRepository lemmaRepository,
+                               SearchResultMaterializer materializer) {
+        this.luceneIndex = luceneIndex;
+        this.queryParser = queryParser;
+        this.typoCorrector = typoCorrector;
+        this.siteRepository = siteRepository;
+        this.lemmaRepository = lemmaRepository;
+        this.materializer = materializer;
+    }
+
+    @Override
+    public SearchResponse search(String query, String site, int offset, int limit, String cursor) {
+        SearchStream stream = stream(query, site, offset, limit, cursor);
+        if (!stream.getHeader().isResult()) {
+            return stream.getHeader();
+        }
+        List<SearchResult> results = new ArrayList<>();
+        stream.forEachResult(results::add);
+        return new SearchResponse(true, stream.getHeader().getCount(), results, stream.getHeader().getCursor());
+    }
+
+    @Override
+    public SearchStream stream(String query, String site, int offset, int limit, String cursor) {
+        if (query == null || query.trim().isEmpty()) {
+            return SearchStream.of(new SearchResponse("Задан пустой поисковый запрос"));
+        }
+        SearchCursor after = null;
+        if (cursor != null && !cursor.isBlank()) {
+            after = SearchCursor.decode(cursor.trim());
+            if (after == null || after.getBinding() != SearchCursor.binding(queryParser.normalize(query), site)
+                    || after.getTotalCount() < 0 || after.getPosition() < 0) {
+                return SearchStream.of(new SearchResponse("Некорректный курсор"));
+            }
+        }
+
+        QueryNode root = queryParser.parse(query);
+        if (root == null) {
+            return SearchStream.of(new SearchResponse("Не удалось обработать запрос"));
+        }
+        Map<String, String> corrections = typoCorrector.corrections(root.lemmas());
+        if (!corrections.isEmpty()) {
+            root = root.rewrite(corrections);
+        }
+        List<String> lemmas = new ArrayList<>(root.positiveLemmas());
+        if (lemmas.isEmpty()) {
+            return SearchStream.of(new SearchResponse(true, 0, List.of()));
+        }
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder().add(toLucene(root), BooleanClause.Occur.MUST);
+        if (site != null && !site.isBlank()) {
+            Site found = siteRepository.findByUrl(site.trim());
+            if (found == null) {
+                return SearchStream.of(new SearchResponse(true, 0, List.of()));
+            }
+            builder.add(new TermQuery(new Term(LuceneIndex.SITE_FIELD, String.valueOf(found.getId()))), BooleanClause.Occur.FILTER);
+        }
+        Query luceneQuery = builder.build();
+        logger.debug("Запрос Lucene: {}", luceneQuery);
+
+        int skip = after == null ? Math.max(offset, 0) : after.getPosition();
+        int topK = (int) Math.min(Integer.MAX_VALUE, (long) skip + Math.max(limit, 0));
+        List<ScoredPage> pages = new ArrayList<>();
+        int totalCount;
+        try {
+            IndexSearcher searcher = luceneIndex.acquire();
+            try {
+                totalCount = after == null ? searcher.count(luceneQuery) : after.getTotalCount();
+                TopDocs topDocs = searcher.search(luceneQuery, Math.max(topK, 1));
+                for (int i = skip; i < Math.min(topDocs.scoreDocs.length, topK); i++) {
+                    ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+                    int pageId = Integer.parseInt(searcher.doc(scoreDoc.doc).get(LuceneIndex.PAGE_FIELD));
+                    pages.add(new ScoredPage(pageId, scoreDoc.score));
+                }
+            } finally {
+                luceneIndex.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        String nextCursor = null;
+        int position = skip + pages.size();
+        if (!pages.isEmpty() && position < totalCount) {
+            ScoredPage last = pages.get(pages.size() - 1);
+            nextCursor = new SearchCursor(last.getScore(), last.getPageId(), position, totalCount,
+                    SearchCursor.binding(queryParser.normalize(query), site)).encode();
+        }
+        Map<Integer, String> lemmaById = new HashMap<>();
+        for (Object[] row : lemmaRepository.findIdsByLemmas(lemmas)) {
+            lemmaById.put((Integer) row[0], (String) row[1]);
+        }
+        return new SearchStream(new SearchResponse(true, totalCount, null, nextCursor), action -> {
+            for (int from = 0; from < pages.size(); from += STREAM_BATCH_SIZE) {
+                List<ScoredPage> batch = pages.subList(from, Math.min(from + STREAM_BATCH_SIZE, pages.size()));
+                materializer.materialize(batch, lemmaById, lemmas).forEach(action);
+            }
+        });
+    }
+
+    /** Отрицания встречаются только внутри AND (или в корне, но тогда запрос уже отвергнут как пустой). */
+    private Query toLucene(QueryNode node) {
+        return switch (node.getType()) {
+            case TERM -> new TermQuery(new Term(LuceneIndex.LEMMAS_FIELD, node.getLemma()));
+            case PHRASE -> {
+                PhraseQuery.Builder phrase = new PhraseQuery.Builder().setSlop(node.getPhrase().getSlop());
+                List<String> lemmas = node.getPhrase().getLemmas();
+                for (int i = 0; i < lemmas.size(); i++) {
+                    phrase.add(new Term(LuceneIndex.LEMMAS_FIELD, lemmas.get(i)), node.getPhrase().getOffsets()[i]);
+                }
+                yield phrase.build();
+            }
+            case AND, OR -> {
+                BooleanQuery.Builder builder = new BooleanQuery.Builder();
+                for (QueryNode child : node.getChildren()) {
+                    if (child.getType() == QueryNode.Type.NOT) {
+                        builder.add(toLucene(child.getChildren().get(0)), BooleanClause.Occur.MUST_NOT);
+                    } else {
+                        builder.add(toLucene(child), node.getType() == QueryNode.Type.AND
+                                ? BooleanClause.Occur.MUST
+                                : BooleanClause.Occur.SHOULD);
+                    }
+                }
+                yield builder.build();
+            }
+            case NOT -> toLucene(node.getChildren().get(0));
+        };
+    }
+}
@@ -0,0 +1,269 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.ArchiveSettings;
+import searchengine.model.Site;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Архив ответов, полученных при обходе, в формате по образцу WARC: полный обход сайта начинает новое
+ * поколение archive/&lt;host&gt;/&lt;время&gt;/segment-NNNNN.warc.gz, повторный обход, продолжение и индексация
+ * отдельных страниц дописывают новые сегменты в последнее поколение. Файлы только дописываются; каждая запись —
+ * отдельный gzip-член (заголовки WARC, пустая строка, тело), поэтому оборванная запись не портит предыдущие.
+ */
+@Component
+public class PageArchive {
+    private static final Logger logger = LoggerFactory.getLogger(PageArchive.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".warc.gz";
+
+    private final ArchiveSettings archiveSettings;
+    private final Map<Integer, SegmentWriter> writers = new ConcurrentHashMap<>();
+
+    public PageArchive(ArchiveSettings archiveSettings) {
+        this.archiveSettings = archiveSettings;
+    }
+
+    /**
+     * Начинает запись ответов сайта в архив; без включённого архива ничего не делает.
+     * @param newGeneration true для полного обхода: старые поколения после него не нужны для переиндексации;
+     *                      иначе запись продолжается в последнем поколении (новое создаётся, только если его нет)
+     */
+    public void begin(Site site, boolean newGeneration) {
+        if (!archiveSettings.isEnabled()) {
+            return;
+        }
+        try {
+            Optional<Path> latest = newGeneration ? Optional.empty() : latestGeneration(site.getUrl());
+            Path generation = latest.isPresent() ? latest.get() : siteDirectory(site.getUrl())
+                    .resolve(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+            Files.createDirectories(generation);
+            SegmentWriter writer = new SegmentWriter(generation, lastSegmentNumber(generation),
+                    archiveSettings.getSegmentSizeMb() * 1024L * 1024L);
+            SegmentWriter previous = writers.put(site.getId(), writer);
+            if (previous != null) {
+                previous.close();
+            }
+            logger.info("Ответы сайта {} сохраняются в архив {}", site.getUrl(), generation);
+        } catch (IOException e) {
+            logger.error("Не удалось создать архив для сайта {}: {}", site.getUrl(), e.getMessage());
+        }
+    }
+
+    public void append(Site site, String url, int statusCode, String contentType, byte[] body) {
+        SegmentWriter writer = writers.get(site.getId());
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.append(url, statusCode, contentType, body);
+        } catch (IOException e) {
+            logger.error("Не удалось записать {} в архив: {}", url, e.getMessage());
+        }
+    }
+
+    public void finish(Site site) {
+        SegmentWriter writer = writers.remove(site.getId());
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    /** Последнее поколение архива сайта, если оно есть. */
+    public Optional<Path> latestGeneration(String siteUrl) throws IOException {
+        Path directory = siteDirectory(siteUrl);
+        if (!Files.isDirectory(directory)) {
+            return Optional.empty();
+        }
+        try (Stream<Path> generations = Files.list(directory)) {
+            return generations.filter(Files::isDirectory).max(Path::compareTo);
+        }
+    }
+
+    /** Читает записи поколения по порядку сегментов; оборванная последняя запись сегмента пропускается. */
+    public void replay(Path generation, Consumer<ArchivedResponse> consumer) throws IOException {
+        read(generation, true, consumer);
+    }
+
+    /**
+     * Как {@link #replay}, но для каждого адреса отдаёт только последнюю запись: поколение дописывается
+     * повторными обходами, и более ранние ответы по тому же адресу устарели. Первый проход читает только
+     * заголовки и запоминает номер последней записи каждого адреса.
+     */
+    public void replayLatest(Path generation, Consumer<ArchivedResponse> consumer) throws IOException {
+        Map<String, Integer> latest = new HashMap<>();
+        int[] index = {0};
+        read(generation, false, response -> latest.put(response.getUrl(), index[0]++));
+        index[0] = 0;
+        read(generation, true, response -> {
+            if (latest.get(response.getUrl()) == index[0]++) {
+                consumer.accept(response);
+            }
+        });
+    }
+
+    private void read(Path generation, boolean withBody, Consumer<ArchivedResponse> consumer) throws IOException {
+        for (Path segment : segments(generation)) {
+            try (DataInputStream in = new DataInputStream(new GZIPInputStream(
+                    new BufferedInputStream(Files.newInputStream(segment), 1 << 16), 1 << 16))) {
+                ArchivedResponse response;
+                while ((response = readRecord(in, withBody)) != null) {
+                    consumer.accept(response);
+                }
+            } catch (EOFException e) {
+                logger.warn("Сегмент {} обрывается на неполной записи", segment);
+            }
+        }
+    }
+
+    private static List<Path> segments(Path generation) throws IOException {
+        try (Stream<Path> files = Files.list(generation)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /** Номер последнего сегмента поколения, 0 для пустого. */
+    private static int lastSegmentNumber(Path generation) throws IOException {
+        List<Path> segments = segments(generation);
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        String name = segments.get(segments.size() - 1).getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private Path siteDirectory(String siteUrl) {
+        return Paths.get(archiveSettings.getDirectory(), URI.create(siteUrl).getHost());
+    }
+
+    private static ArchivedResponse readRecord(DataInputStream in, boolean withBody) throws IOException {
+        String versionLine = readLine(in);
+        if (versionLine == null) {
+            return null;
+        }
+        Map<String, String> headers = new HashMap<>();
+        for (String line = readLine(in); line != null && !line.isEmpty(); line = readLine(in)) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+            }
+        }
+        int length = Integer.parseInt(headers.getOrDefault("Content-Length", "0"));
+        byte[] body;
+        if (withBody) {
+            body = new byte[length];
+            in.readFully(body);
+        } else {
+            body = new byte[0];
+            in.skipNBytes(length);
+        }
+        in.readFully(new byte[4]);
+        return new ArchivedResponse(
+                headers.get("WARC-Target-URI"),
+                Integer.parseInt(headers.getOrDefault("WARC-X-Status", "200")),
+                headers.get("Content-Type"),
+                body);
+    }
+
+    /** Строка до \r\n в UTF-8; null в конце потока. */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private static final class SegmentWriter {
+        private final Path generation;
+        private final long segmentBytes;
+        private int segmentNumber;
+        private FileOutputStream out;
+
+        private SegmentWriter(Path generation, int segmentNumber, long segmentBytes) {
+            this.generation = generation;
+            this.segmentNumber = segmentNumber;
+            this.segmentBytes = segmentBytes;
+        }
+
+        synchronized void append(String url, int statusCode, String contentType, byte[] body) throws IOException {
+            if (out == null || out.getChannel().position() >= segmentBytes) {
+                close();
+                segmentNumber++;
+                out = new FileOutputStream(generation.resolve(String.format("%s%05d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX)).toFile(), true);
+            }
+            StringBuilder header = new StringBuilder("WARC/1.0\r\n")
+                    .append("WARC-Type: response\r\n")
+                    .append("WARC-Target-URI: ").append(url).append("\r\n")
+                    .append("WARC-Date: ").append(Instant.now()).append("\r\n")
+                    .append("WARC-X-Status: ").append(statusCode).append("\r\n");
+            if (contentType != null) {
+                header.append("Content-Type: ").append(contentType).append("\r\n");
+            }
+            header.append("Content-Length: ").append(body.length).append("\r\n\r\n");
+
+            try (GZIPOutputStream gzip = new GZIPOutputStream(new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    out.write(bytes, offset, length);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            })) {
+                gzip.write(header.toString().getBytes(StandardCharsets.UTF_8));
+                gzip.write(body);
+                gzip.write("\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+
+        synchronized void close() {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.close();
+            } catch (IOException e) {
+                logger.warn("Ошибка при закрытии сегмента архива: {}", e.getMessage());
+            }
+            out = null;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package searchengine.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import java.util.List;
+
+/**
+ * Результат одного прохода по HTML-документу: основной текст, заголовок и абсолютные ссылки без фрагментов.
+ */
+@Getter
+@AllArgsConstructor
+public class PageContent {
+    private final String text;
+    private final String title;
+    private final List<String> links;
+}
@@ -1,14 +1,10 @@
 package searchengine.services;
 
 import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import searchengine.model.Page;
 import searchengine.model.Site;
-import searchengine.model.Lemma;
-import searchengine.model.Index;
 import searchengine.repository.PageRepository;
 import searchengine.repository.LemmaRepository;
 import searchengine.repository.IndexRepository;
@@ -18,7 +14,6 @@ import java.util.*;
 import java.util.concurrent.RecursiveAction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import searchengine.utils.LemmaProcessor;
 import java.util.List;
 
 
@@ -31,6 +26,9 @@ public class PageCrawler extends RecursiveAction {
     private final IndexingService indexingService;
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
+    private final PageIndexer pageIndexer;
+    private boolean revisitLinks;
+    private List<Page> replacedPages = List.of();
 
     public PageCrawler(Site site,LemmaRepository lemmaRepository,IndexRepository indexRepository, String url, Set<String> visitedUrls, PageRepository pageRepository, IndexingService indexingService) {
         this.site = site;
@@ -40,11 +38,43 @@ public class PageCrawler extends RecursiveAction {
         this.indexingService = indexingService;
         this.indexRepository = indexRepository;
         this.lemmaRepository = lemmaRepository;
+        this.pageIndexer = new PageIndexer(site, pageRepository, lemmaRepository, indexRepository, indexingService);
+    }
+
+    public String getUrl() {
+        return url;
+    }
 
+    /**
+     * Загружать страницу, даже если она уже сохранена, чтобы заново поставить в очередь её ссылки. Нужно при
+     * продолжении обхода: адрес из контрольной точки мог быть сохранён до того, как его ссылки попали в очередь.
+     */
+    public PageCrawler revisitingLinks() {
+        this.revisitLinks = true;
+        return this;
+    }
+
+    /**
+     * Загрузить страницу заново и заменить ею сохранённые версии. Прежние версии удаляются только после того,
+     * как новая сохранена, поэтому остановка или ошибка загрузки их не теряет.
+     */
+    public PageCrawler replacing(List<Page> pages) {
+        this.replacedPages = pages;
+        return this;
     }
 
     @Override
     protected void compute() {
+        try {
+            crawl();
+        } finally {
+            if (indexingService.isIndexingInProgress()) {
+                indexingService.getCrawlCheckpoint().finished(site, url);
+            }
+        }
+    }
+
+    private void crawl() {
         if (!checkAndLogStopCondition("Начало обработки")) return;
 
         synchronized (visitedUrls) {
@@ -58,25 +88,43 @@ public class PageCrawler extends RecursiveAction {
         try {
             String path = new URL(url).getPath();
 
-            if (pageRepository.existsByPathAndSiteId(path, site.getId())) {
+            boolean stored = replacedPages.isEmpty() && pageRepository.existsByPathAndSiteId(path, site.getId());
+            if (stored && !revisitLinks) {
                 logger.info("Пропускаем ранее проиндексированную страницу: {}", url);
                 return;
             }
 
-            long delay = 6 + new Random().nextInt(66);
-            logger.debug("Задержка перед запросом: {} ms для URL: {}", delay, url);
-            Thread.sleep(delay);
-
-            if (!checkAndLogStopCondition("Перед запросом")) return;
+            String host = new URL(url).getHost();
+            HostConcurrencyController hostConcurrency = indexingService.getHostConcurrency();
+            hostConcurrency.acquire(host);
+            if (!checkAndLogStopCondition("Перед запросом")) {
+                hostConcurrency.abandon(host);
+                return;
+            }
 
-            logger.info("Обработка URL: {}", url);
-            Connection.Response response = Jsoup.connect(url)
-                    .userAgent("Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6")
-                    .referrer("http://www.google.com")
-                    .ignoreContentType(true)
-                    .execute();
+            Connection.Response response;
+            int statusCode = -1;
+            long start = System.currentTimeMillis();
+            try {
+                logger.info("Обработка URL: {}", url);
+                response = Jsoup.connect(url)
+                        .userAgent("Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6")
+                        .referrer("http://www.google.com")
+                        .ignoreContentType(true)
+                        .execute();
+                statusCode = response.statusCode();
+            } catch (HttpStatusException e) {
+                statusCode = e.getStatusCode();
+                throw e;
+            } finally {
+                hostConcurrency.release(host, statusCode, System.currentTimeMillis() - start);
+            }
 
-            handleResponse(response);
+            if (stored) {
+                processLinks(pageIndexer.extractLinks(url, response.contentType(), response.bodyAsBytes()));
+            } else {
+                handleResponse(response);
+            }
 
         } catch (IOException e) {
             handleError(e);
@@ -87,126 +135,20 @@ public class PageCrawler extends RecursiveAction {
     }
 
     public void handleResponse(Connection.Response response) throws IOException {
-        String contentType = response.contentType();
-        int statusCode = response.statusCode();
-        String path = new URL(url).getPath();
-
-        if (pageRepository.existsByPathAndSiteId(path, site.getId())) {
-            logger.info("Страница {} уже существует. Пропускаем сохранение.", url);
-            return;
-        }
-
-        Page page = new Page();
-        page.setSite(site);
-        page.setPath(path);
-        page.setCode(statusCode);
-
-        if (contentType != null && contentType.startsWith("image/")) {
-            page.setContent("Image content: " + contentType);
-            logger.info("Изображение добавлено: {}", url);
-        } else if (contentType != null && contentType.contains("text/html")) {
-            Document document = response.parse();
-            String text = extractText(document);
-            Map<String, Integer> lemmaFrequencies = lemmatizeText(text);
-
-            page.setContent(text);
-            pageRepository.save(page);
-
-            saveLemmasAndIndexes(lemmaFrequencies, page);
-
-            logger.info("HTML-страница добавлена: {}", url);
-            processLinks(document);
-        } else {
-            page.setContent("Unhandled content type: " + contentType);
-            logger.info("Контент с неизвестным типом добавлен: {}", url);
-        }
-    }
-
-    public Map<String, Integer> lemmatizeText(String text) {
-        Map<String, Integer> lemmaFrequencies = new HashMap<>();
-
-        try {
-            LemmaProcessor lemmaProcessor = new LemmaProcessor();
-
-            List<String> words = lemmaProcessor.extractLemmas(text);
-
-            for (String word : words) {
-                lemmaFrequencies.put(word, lemmaFrequencies.getOrDefault(word, 0) + 1);
-            }
-        } catch (Exception e) {
-            System.err.println("Ошибка лемматизации текста: " + e.getMessage());
-            e.printStackTrace();
-        }
-
-        return lemmaFrequencies;
-    }
-
-    private String extractText(Document document) {
-        return document.text();
-    }
-
-    public void saveLemmasAndIndexes(Map<String, Integer> lemmaFrequencies, Page page) {
-        int newLemmas = 0;
-        int updatedLemmas = 0;
-        int savedIndexes = 0;
-
-        StringBuilder lemmaLog = new StringBuilder("Найденные леммы: ");
-
-        for (Map.Entry<String, Integer> entry : lemmaFrequencies.entrySet()) {
-            String lemmaText = entry.getKey();
-            int rank = entry.getValue();
-
-            lemmaLog.append(lemmaText).append(" (").append(rank).append("), ");
-
-            Optional<Lemma> optionalLemma = lemmaRepository.findByLemmaAndSite(lemmaText, page.getSite());
-
-            Lemma lemma;
-            try {
-                if (optionalLemma.isPresent()) {
-                    lemma = optionalLemma.get();
-                    lemma.setFrequency(lemma.getFrequency() + 1);
-                    lemmaRepository.save(lemma);
-                    updatedLemmas++;
-                } else {
-                    lemma = new Lemma();
-                    lemma.setLemma(lemmaText);
-                    lemma.setSite(page.getSite());
-                    lemma.setFrequency(1);
-                    lemmaRepository.save(lemma);
-                    newLemmas++;
-                }
-
-                Index index = new Index();
-                index.setPage(page);
-                index.setLemma(lemma);
-                index.setRank((float) rank);
-
-                try {
-                    indexRepository.save(index);
-                    savedIndexes++;
-                } catch (org.hibernate.exception.ConstraintViolationException e) {
-                    logger.warn("Дублирующаяся запись для леммы '{}', пропускаем индекс.", lemmaText);
-                }
-
-            } catch (Exception e) {
-                logger.error("Ошибка при обработке леммы '{}': {}", lemmaText, e.getMessage());
-            }
+        byte[] body = response.bodyAsBytes();
+        indexingService.getPageArchive().append(site, url, response.statusCode(), response.contentType(), body);
+        PageContent content = pageIndexer.store(url, response.statusCode(), response.contentType(), body, replacedPages);
+        if (content != null) {
+            processLinks(content.getLinks());
         }
-
-        logger.info(lemmaLog.toString());
-
-        logger.info("Страница '{}' обработана. Новых лемм: {}, Обновленных лемм: {}, Связок (индексов): {}",
-                page.getPath(), newLemmas, updatedLemmas, savedIndexes);
     }
 
-    private void processLinks(Document document) {
-        Elements links = document.select("a[href]");
+    private void processLinks(List<String> links) {
         List<PageCrawler> subtasks = new ArrayList<>();
-        for (Element link : links) {
+        List<String> newUrls = new ArrayList<>();
+        for (String childUrl : links) {
             if (!checkAndLogStopCondition("При обработке ссылок")) return;
 
-            String childUrl = link.absUrl("href");
-
             if (!childUrl.startsWith(site.getUrl())) {
                 logger.debug("Ссылка {} находится за пределами корневого сайта. Пропускаем.", childUrl);
                 continue;
@@ -232,13 +174,21 @@ public class PageCrawler extends RecursiveAction {
             synchronized (visitedUrls) {
                 if (childPath != null && !visitedUrls.contains(childPath)) {
                     visitedUrls.add(childPath);
+                    newUrls.add(childUrl);
+                    if (!indexingService.getCrawlTrapDetector().admit(site, childUrl)) {
+                        logger.debug("Ссылка {} пропущена: шаблон адреса ограничен как ловушка обхода", childUrl);
+                        continue;
+                    }
                     subtasks.add(new PageCrawler(site, lemmaRepository, indexRepository, childUrl, visitedUrls, pageRepository, indexingService));
+                    indexingService.getCrawlCheckpoint().submitted(site, childUrl);
                     logger.debug("Добавлена ссылка в обработку: {}", childUrl);
                 } else {
                     logger.debug("Ссылка уже обработана: {}", childUrl);
                 }
             }
         }
+        indexingService.getCrawlTrapDetector().recordLinks(site, url, newUrls);
+        indexingService.getCrawlCheckpoint().finished(site, url);
         invokeAll(subtasks);
     }
 
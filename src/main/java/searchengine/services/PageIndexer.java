@@ -0,0 +1,229 @@
+package searchengine.services;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import searchengine.model.Index;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
+import searchengine.utils.IntList;
+import searchengine.utils.PositionCodec;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Сохраняет полученную страницу сайта: разбор HTML, лемматизация, запись page, lemma и index.
+ * Общий для обхода сайта ({@link PageCrawler}), индексации отдельной страницы и переиндексации из архива.
+ */
+public class PageIndexer {
+    private static final Logger logger = LoggerFactory.getLogger(PageIndexer.class);
+    private final Site site;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final IndexRepository indexRepository;
+    private final IndexingService indexingService;
+
+    public PageIndexer(Site site, PageRepository pageRepository, LemmaRepository lemmaRepository,
+                       IndexRepository indexRepository, IndexingService indexingService) {
+        this.site = site;
+        this.pageRepository = pageRepository;
+        this.lemmaRepository = lemmaRepository;
+        this.indexRepository = indexRepository;
+        this.indexingService = indexingService;
+    }
+
+    /** Сохраняет ответ сервера; для HTML-страницы возвращает её текст и ссылки, иначе null. */
+    public PageContent store(String url, int statusCode, String contentType, byte[] body) throws IOException {
+        return store(url, statusCode, contentType, body, List.of());
+    }
+
+    /**
+     * То же, но страница сохраняется, даже если уже есть: после сохранения новой HTML-версии
+     * прежние версии replaced удаляются. При пустом replaced существующая страница не перезаписывается.
+     */
+    public PageContent store(String url, int statusCode, String contentType, byte[] body, List<Page> replaced) throws IOException {
+        String path = new URL(url).getPath();
+
+        if (replaced.isEmpty() && pageRepository.existsByPathAndSiteId(path, site.getId())) {
+            logger.info("Страница {} уже существует. Пропускаем сохранение.", url);
+            return null;
+        }
+
+        Page page = new Page();
+        page.setSite(site);
+        page.setPath(path);
+        page.setCode(statusCode);
+
+        if (contentType != null && contentType.startsWith("image/")) {
+            page.setContent("Image content: " + contentType);
+            logger.info("Изображение добавлено: {}", url);
+        } else if (contentType != null && contentType.contains("text/html")) {
+            Document document = Jsoup.parse(new ByteArrayInputStream(body), charsetOf(contentType), url);
+            PageContent content = extractContent(document);
+            Map<String, IntList> lemmaPositions = lemmatizeText(content.getText());
+
+            page.setContent(content.getText());
+            page.setTitle(content.getTitle());
+            page.setTokenCount(countTokens(lemmaPositions));
+            pageRepository.save(page);
+
+            int newLemmas = saveLemmasAndIndexes(lemmaPositions, page);
+            indexingService.getCrawlTrapDetector().recordPage(site, url, newLemmas);
+            replaced.forEach(indexingService::deletePageData);
+
+            logger.info("HTML-страница добавлена: {}", url);
+            return content;
+        } else {
+            page.setContent("Unhandled content type: " + contentType);
+            logger.info("Контент с неизвестным типом добавлен: {}", url);
+        }
+        return null;
+    }
+
+    /** Пересохраняет страницу с новым текстом: новая версия записывается раньше, чем удаляется прежняя. */
+    public void replaceText(String url, String text) throws IOException {
+        List<Page> previous = pageRepository.findByPathAndSiteId(new URL(url).getPath(), site.getId());
+        if (previous.isEmpty()) {
+            return;
+        }
+        Page current = previous.get(0);
+        Map<String, IntList> lemmaPositions = lemmatizeText(text);
+        Page page = new Page();
+        page.setSite(site);
+        page.setPath(current.getPath());
+        page.setCode(current.getCode());
+        page.setTitle(current.getTitle());
+        page.setContent(text);
+        page.setTokenCount(countTokens(lemmaPositions));
+        pageRepository.save(page);
+        saveLemmasAndIndexes(lemmaPositions, page);
+        previous.forEach(indexingService::deletePageData);
+    }
+
+    /** Ссылки уже сохранённой страницы без её повторного сохранения. */
+    public List<String> extractLinks(String url, String contentType, byte[] body) throws IOException {
+        if (contentType == null || !contentType.contains("text/html")) {
+            return List.of();
+        }
+        Document document = Jsoup.parse(new ByteArrayInputStream(body), charsetOf(contentType), url);
+        return extractContent(document).getLinks();
+    }
+
+    /** Кодировка из заголовка Content-Type; null — Jsoup определит её по meta или возьмёт UTF-8. */
+    static String charsetOf(String contentType) {
+        int start = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (start < 0) {
+            return null;
+        }
+        String charset = contentType.substring(start + "charset=".length()).trim();
+        int end = charset.indexOf(';');
+        if (end >= 0) {
+            charset = charset.substring(0, end);
+        }
+        charset = charset.replace("\"", "").replace("'", "").trim();
+        return charset.isEmpty() ? null : charset;
+    }
+
+    public Map<String, IntList> lemmatizeText(String text) {
+        Map<String, IntList> lemmaPositions = new HashMap<>();
+
+        try {
+            lemmaPositions = indexingService.getLemmaProcessor().extractLemmaPositions(text);
+        } catch (Exception e) {
+            System.err.println("Ошибка лемматизации текста: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return lemmaPositions;
+    }
+
+    public static int countTokens(Map<String, IntList> lemmaPositions) {
+        int tokens = 0;
+        for (IntList positions : lemmaPositions.values()) {
+            tokens += positions.size();
+        }
+        return tokens;
+    }
+
+    public PageContent extractContent(Document document) {
+        return indexingService.getContentExtractor().extract(site, document);
+    }
+
+    /** Сохраняет леммы и связи страницы; возвращает число лемм, новых для сайта. */
+    public int saveLemmasAndIndexes(Map<String, IntList> lemmaPositions, Page page) {
+        int newLemmas = 0;
+        int updatedLemmas = 0;
+        int savedIndexes = 0;
+
+        StringBuilder lemmaLog = new StringBuilder("Найденные леммы: ");
+
+        for (Map.Entry<String, IntList> entry : lemmaPositions.entrySet()) {
+            String lemmaText = entry.getKey();
+            int rank = entry.getValue().size();
+
+            lemmaLog.append(lemmaText).append(" (").append(rank).append("), ");
+
+            Optional<Lemma> optionalLemma = lemmaRepository.findByLemmaAndSite(lemmaText, page.getSite());
+
+            Lemma lemma;
+            try {
+                if (optionalLemma.isPresent()) {
+                    lemma = optionalLemma.get();
+                    lemma.setFrequency(lemma.getFrequency() + 1);
+                    if (lemma.getMaxRank() == null || lemma.getMaxRank() < rank) {
+                        lemma.setMaxRank((float) rank);
+                    }
+                    lemmaRepository.save(lemma);
+                    updatedLemmas++;
+                } else {
+                    lemma = new Lemma();
+                    lemma.setLemma(lemmaText);
+                    lemma.setSite(page.getSite());
+                    lemma.setFrequency(1);
+                    lemma.setMaxRank((float) rank);
+                    lemmaRepository.save(lemma);
+                    newLemmas++;
+                }
+
+                Index index = new Index();
+                index.setPage(page);
+                index.setLemma(lemma);
+                index.setRank((float) rank);
+                index.setPositions(PositionCodec.encode(entry.getValue()));
+
+                try {
+                    indexRepository.save(index);
+                    indexingService.getPostingsReplica().add(page.getSite().getId(), lemma.getId(), lemmaText, page.getId(), rank);
+                    savedIndexes++;
+                } catch (org.hibernate.exception.ConstraintViolationException e) {
+                    logger.warn("Дублирующаяся запись для леммы '{}', пропускаем индекс.", lemmaText);
+                }
+
+            } catch (Exception e) {
+                logger.error("Ошибка при обработке леммы '{}': {}", lemmaText, e.getMessage());
+            }
+        }
+
+        logger.info(lemmaLog.toString());
+
+        if (page.getTokenCount() != null) {
+            indexingService.getDocumentStatistics().recordPage(page.getSite().getId(), page.getId(), page.getTokenCount());
+        }
+        indexingService.getLuceneIndex().indexPage(page.getSite().getId(), page.getId(), lemmaPositions);
+
+        logger.info("Страница '{}' обработана. Новых лемм: {}, Обновленных лемм: {}, Связок (индексов): {}",
+                page.getPath(), newLemmas, updatedLemmas, savedIndexes);
+        return newLemmas;
+    }
+}
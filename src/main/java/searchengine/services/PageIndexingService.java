@@ -1,7 +1,6 @@
 package searchengine.services;
 
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,8 +20,7 @@ import java.util.concurrent.ForkJoinPool;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.net.URL;
-import org.jsoup.select.Elements;
-import org.jsoup.nodes.Element;
+import searchengine.utils.IntList;
 
 @Service
 public class PageIndexingService {
@@ -40,7 +38,7 @@ public class PageIndexingService {
     @Autowired
     private IndexingService indexingService;
 
-    private PageCrawler pageCrawler;
+    private PageIndexer pageIndexer;
     private final Set<String> visitedUrls = ConcurrentHashMap.newKeySet();
     private final ForkJoinPool forkJoinPool = new ForkJoinPool();
 
@@ -69,8 +67,8 @@ public class PageIndexingService {
 
         visitedUrls.clear();
 
-        // Инициализация объекта pageCrawler
-        pageCrawler = new PageCrawler(site, lemmaRepository, indexRepository, url, visitedUrls, pageRepository, indexingService);
+        pageIndexer = new PageIndexer(site, pageRepository, lemmaRepository, indexRepository, indexingService);
+        indexingService.getPageArchive().begin(site, true);
 
         try {
             processPageRecursively(url, site);
@@ -86,19 +84,14 @@ public class PageIndexingService {
             site.setStatusTime(LocalDateTime.now());
             siteRepository.save(site);
             logger.error("Индексация завершилась с ошибкой: {}", e.getMessage(), e);
+        } finally {
+            indexingService.getPageArchive().finish(site);
+            indexingService.publishSiteIndexed(url);
         }
     }
 
 
     private boolean isValidInternalUrl(String url, String baseUrl) {
-        if (url.matches(".*\\/institute\\/staff\\/[^\\/]+")) {
-            return false;
-        }
-
-        if (url.matches(".*\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3}\\+\\d{2}:\\d{2}.*")) {
-            return false;
-        }
-
         if (url.matches(".*[\\w.%+-]+@[\\w.-]+\\.[A-Za-z]{2,6}.*")) {
             return false;
         }
@@ -126,6 +119,11 @@ public class PageIndexingService {
                 return;
             }
 
+            if (!indexingService.getCrawlTrapDetector().admit(site, url)) {
+                logger.info("Пропускаем страницу: шаблон адреса ограничен как ловушка обхода: {}", url);
+                return;
+            }
+
             int delay = (int) (500 + Math.random() * 1000);
             Thread.sleep(delay);
 
@@ -145,25 +143,26 @@ public class PageIndexingService {
                 return;
             }
 
-            Document document = response.parse();
-            String title = document.title();
-            String content = document.body().text();
+            indexingService.getPageArchive().append(site, url, response.statusCode(), contentType, response.bodyAsBytes());
+            PageContent pageContent = pageIndexer.extractContent(response.parse());
+            String content = pageContent.getText();
+
+            Map<String, IntList> lemmaPositions = pageIndexer.lemmatizeText(content);
 
             Page page = new Page();
             page.setSite(site);
             page.setPath(path);
             page.setContent(content);
             page.setCode(200);
-            page.setTitle(title);
+            page.setTitle(pageContent.getTitle());
+            page.setTokenCount(PageIndexer.countTokens(lemmaPositions));
             pageRepository.save(page);
             logger.info("Страница добавлена: {}", url);
 
-            Map<String, Integer> lemmaFrequencies = pageCrawler.lemmatizeText(content);
-            pageCrawler.saveLemmasAndIndexes(lemmaFrequencies, page);
+            int newLemmas = pageIndexer.saveLemmasAndIndexes(lemmaPositions, page);
+            indexingService.getCrawlTrapDetector().recordPage(site, url, newLemmas);
 
-            Elements links = document.select("a[href]");
-            for (Element link : links) {
-                String absUrl = link.absUrl("href");
+            for (String absUrl : pageContent.getLinks()) {
                 if (isValidInternalUrl(absUrl, site.getUrl())) {
                     processPageRecursively(absUrl, site);
                 }
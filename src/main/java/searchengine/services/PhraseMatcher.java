@@ -0,0 +1,51 @@
+package searchengine.services;
+
+import searchengine.utils.PositionCodec;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Проверяет по сохранённым позициям, что леммы фразы стоят на странице в нужном порядке и на нужном расстоянии.
+ */
+public class PhraseMatcher {
+    private final List<Postings> postings;
+    private final int[] offsets;
+    private final int slop;
+
+    public PhraseMatcher(List<Postings> postings, int[] offsets, int slop) {
+        this.postings = postings;
+        this.offsets = offsets;
+        this.slop = slop;
+    }
+
+    public boolean matches(int pageId) {
+        int[][] positions = new int[postings.size()][];
+        for (int i = 0; i < positions.length; i++) {
+            Postings termPostings = postings.get(i);
+            int at = termPostings.seek(pageId, 0);
+            if (at >= termPostings.size() || termPostings.pageId(at) != pageId) {
+                return false;
+            }
+            positions[i] = PositionCodec.decode(termPostings.positions(at));
+        }
+
+        for (int start : positions[0]) {
+            boolean matched = true;
+            for (int i = 1; i < positions.length && matched; i++) {
+                matched = containsNear(positions[i], start + offsets[i] - offsets[0]);
+            }
+            if (matched) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean containsNear(int[] positions, int expected) {
+        int at = Arrays.binarySearch(positions, expected - slop);
+        if (at < 0) {
+            at = -at - 1;
+        }
+        return at < positions.length && positions[at] <= expected + slop;
+    }
+}
@@ -0,0 +1,17 @@
+package searchengine.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import java.util.List;
+
+/**
+ * Фраза из запроса в кавычках: леммы в порядке следования и номера их слов внутри фразы.
+ * slop — допустимое отклонение каждой леммы от ожидаемой позиции ("..."~N), 0 — точная фраза.
+ */
+@Getter
+@AllArgsConstructor
+public class PhraseQuery {
+    private final List<String> lemmas;
+    private final int[] offsets;
+    private final int slop;
+}
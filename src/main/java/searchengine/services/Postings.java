@@ -0,0 +1,87 @@
+package searchengine.services;
+
+import java.util.Arrays;
+
+/**
+ * Список страниц одной леммы, отсортированный по id страницы, с рангами (числом вхождений)
+ * и, если они загружены, закодированными позициями слов.
+ */
+public class Postings {
+    public static final Postings EMPTY = new Postings(new int[0], new float[0], null, 0);
+
+    private final int[] pageIds;
+    private final float[] ranks;
+    private final byte[][] positions;
+    private final int size;
+
+    public Postings(int[] pageIds, float[] ranks, byte[][] positions, int size) {
+        this.pageIds = pageIds;
+        this.ranks = ranks;
+        this.positions = positions;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int pageId(int position) {
+        return pageIds[position];
+    }
+
+    public float rank(int position) {
+        return ranks[position];
+    }
+
+    public byte[] positions(int position) {
+        return positions == null ? null : positions[position];
+    }
+
+    /** Позиция первой страницы с id не меньше pageId, начиная с from; size(), если такой нет. */
+    public int seek(int pageId, int from) {
+        if (from >= size || pageIds[from] >= pageId) {
+            return from;
+        }
+        int bound = 1;
+        while (from + bound < size && pageIds[from + bound] < pageId) {
+            bound <<= 1;
+        }
+        int position = Arrays.binarySearch(pageIds, from + (bound >> 1), Math.min(from + bound + 1, size), pageId);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    public static class Builder {
+        private int[] pageIds = new int[16];
+        private float[] ranks = new float[16];
+        private byte[][] positions;
+        private int size;
+
+        public Builder add(int pageId, float rank) {
+            return add(pageId, rank, null);
+        }
+
+        public Builder add(int pageId, float rank, byte[] encodedPositions) {
+            if (size == pageIds.length) {
+                pageIds = Arrays.copyOf(pageIds, size * 2);
+                ranks = Arrays.copyOf(ranks, size * 2);
+                if (positions != null) {
+                    positions = Arrays.copyOf(positions, size * 2);
+                }
+            }
+            if (encodedPositions != null && positions == null) {
+                positions = new byte[pageIds.length][];
+            }
+            pageIds[size] = pageId;
+            ranks[size] = rank;
+            if (positions != null) {
+                positions[size] = encodedPositions;
+            }
+            size++;
+            return this;
+        }
+
+        public Postings build() {
+            return new Postings(pageIds, ranks, positions, size);
+        }
+    }
+}
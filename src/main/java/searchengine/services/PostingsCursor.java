@@ -0,0 +1,46 @@
+package searchengine.services;
+
+/**
+ * Курсор по спискам страниц одной леммы запроса вместе с её оценкой BM25 и верхней границей вклада.
+ */
+public class PostingsCursor {
+    private final Postings postings;
+    private final Bm25Scorer.TermScorer scorer;
+    private final double upperBound;
+    private int position;
+
+    public PostingsCursor(Postings postings, Bm25Scorer.TermScorer scorer, double upperBound) {
+        this.postings = postings;
+        this.scorer = scorer;
+        this.upperBound = upperBound;
+    }
+
+    public boolean exhausted() {
+        return position >= postings.size();
+    }
+
+    public int pageId() {
+        return exhausted() ? Integer.MAX_VALUE : postings.pageId(position);
+    }
+
+    public boolean advanceTo(int pageId) {
+        position = postings.seek(pageId, position);
+        return !exhausted() && postings.pageId(position) == pageId;
+    }
+
+    public void next() {
+        position++;
+    }
+
+    public double score() {
+        return scorer.score(postings.pageId(position), postings.rank(position));
+    }
+
+    public double upperBound() {
+        return upperBound;
+    }
+
+    public int size() {
+        return postings.size();
+    }
+}
@@ -0,0 +1,244 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.model.Site;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.SiteRepository;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Копия обратного индекса в памяти (включается search-settings.in-memory-index): для каждой леммы —
+ * отсортированные id страниц и ранги в примитивных массивах. Загружается при старте, перечитывается
+ * для сайта после его индексации, а во время индексации пополняется по мере сохранения страниц.
+ */
+@Component
+public class PostingsReplica {
+    private static final Logger logger = LoggerFactory.getLogger(PostingsReplica.class);
+
+    private final IndexRepository indexRepository;
+    private final LemmaRepository lemmaRepository;
+    private final SiteRepository siteRepository;
+    private final SearchSettings searchSettings;
+    private final Map<Integer, Map<String, Integer>> lemmaIdsBySite = new ConcurrentHashMap<>();
+    private volatile LemmaPostings[] byLemmaId = new LemmaPostings[1024];
+    private volatile boolean ready;
+
+    public PostingsReplica(IndexRepository indexRepository, LemmaRepository lemmaRepository,
+                           SiteRepository siteRepository, SearchSettings searchSettings) {
+        this.indexRepository = indexRepository;
+        this.lemmaRepository = lemmaRepository;
+        this.siteRepository = siteRepository;
+        this.searchSettings = searchSettings;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAll() {
+        if (!searchSettings.isInMemoryIndex()) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            for (Site site : siteRepository.findAll()) {
+                loadSite(site.getId());
+            }
+            ready = true;
+            logger.info("Индекс загружен в память за {} мс", System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("Не удалось загрузить индекс в память, поиск будет читать его из базы: {}", e.getMessage(), e);
+        }
+    }
+
+    @EventListener
+    public void onSiteIndexed(SiteIndexedEvent event) {
+        if (searchSettings.isInMemoryIndex()) {
+            loadSite(event.getSiteId());
+        }
+    }
+
+    /** Добавляет вхождение леммы на только что сохранённую страницу. */
+    public void add(int siteId, int lemmaId, String lemma, int pageId, float rank) {
+        if (!searchSettings.isInMemoryIndex()) {
+            return;
+        }
+        LemmaPostings postings;
+        synchronized (this) {
+            lemmaIdsBySite.computeIfAbsent(siteId, id -> new ConcurrentHashMap<>()).put(lemma, lemmaId);
+            postings = slot(lemmaId);
+        }
+        postings.add(pageId, rank);
+    }
+
+    /** Убирает страницу из списков её лемм, например при замене страницы новой версией. */
+    public void removePage(int pageId, Collection<Integer> lemmaIds) {
+        if (!searchSettings.isInMemoryIndex()) {
+            return;
+        }
+        LemmaPostings[] current = byLemmaId;
+        for (int lemmaId : lemmaIds) {
+            LemmaPostings postings = lemmaId < current.length ? current[lemmaId] : null;
+            if (postings != null) {
+                postings.remove(pageId);
+            }
+        }
+    }
+
+    public synchronized void removeSite(int siteId) {
+        Map<String, Integer> lemmaIds = lemmaIdsBySite.remove(siteId);
+        if (lemmaIds == null) {
+            return;
+        }
+        LemmaPostings[] current = byLemmaId;
+        for (int lemmaId : lemmaIds.values()) {
+            if (lemmaId < current.length) {
+                current[lemmaId] = null;
+            }
+        }
+    }
+
+    /** Строки словаря сайта для лемм запроса: частота — число страниц в списке, максимальный ранг — по списку. */
+    public List<QueryTerm> terms(Collection<String> lemmas, int siteId) {
+        Map<String, Integer> lemmaIds = lemmaIdsBySite.getOrDefault(siteId, Map.of());
+        LemmaPostings[] current = byLemmaId;
+        List<QueryTerm> terms = new ArrayList<>();
+        for (String lemma : lemmas) {
+            Integer lemmaId = lemmaIds.get(lemma);
+            LemmaPostings postings = lemmaId == null || lemmaId >= current.length ? null : current[lemmaId];
+            if (postings == null) {
+                continue;
+            }
+            Postings snapshot = postings.snapshot();
+            if (snapshot.size() > 0) {
+                terms.add(new QueryTerm(lemmaId, lemma, siteId, snapshot.size(), postings.maxRank()));
+            }
+        }
+        return terms;
+    }
+
+    public Postings postings(int lemmaId) {
+        LemmaPostings[] current = byLemmaId;
+        LemmaPostings postings = lemmaId < current.length ? current[lemmaId] : null;
+        return postings == null ? Postings.EMPTY : postings.snapshot();
+    }
+
+    private void loadSite(int siteId) {
+        Map<String, Integer> lemmaIds = new ConcurrentHashMap<>();
+        for (Object[] row : lemmaRepository.findLemmaIdsBySiteId(siteId)) {
+            lemmaIds.put((String) row[1], (Integer) row[0]);
+        }
+        Map<Integer, LemmaPostings> loaded = new HashMap<>();
+        LemmaPostings postings = null;
+        int currentLemmaId = -1;
+        for (Object[] row : indexRepository.findPostingsBySiteId(siteId)) {
+            int lemmaId = (Integer) row[0];
+            if (lemmaId != currentLemmaId) {
+                postings = new LemmaPostings();
+                loaded.put(lemmaId, postings);
+                currentLemmaId = lemmaId;
+            }
+            postings.add((Integer) row[1], (Float) row[2]);
+        }
+
+        synchronized (this) {
+            removeSite(siteId);
+            lemmaIdsBySite.put(siteId, lemmaIds);
+            loaded.forEach((lemmaId, lemmaPostings) -> {
+                ensureCapacity(lemmaId);
+                byLemmaId[lemmaId] = lemmaPostings;
+            });
+        }
+        logger.info("Индекс сайта {} в памяти: {} лемм", siteId, loaded.size());
+    }
+
+    private LemmaPostings slot(int lemmaId) {
+        ensureCapacity(lemmaId);
+        LemmaPostings postings = byLemmaId[lemmaId];
+        if (postings == null) {
+            postings = new LemmaPostings();
+            byLemmaId[lemmaId] = postings;
+        }
+        return postings;
+    }
+
+    private void ensureCapacity(int lemmaId) {
+        if (lemmaId >= byLemmaId.length) {
+            byLemmaId = Arrays.copyOf(byLemmaId, Math.max(lemmaId + 1, byLemmaId.length * 2));
+        }
+    }
+
+    /**
+     * Список одной леммы с дописыванием в конец. Снимок не меняется после выдачи: дописывание идёт
+     * за его границу, а вставка в середину и расширение создают новые массивы.
+     */
+    private static final class LemmaPostings {
+        private int[] pageIds = new int[4];
+        private float[] ranks = new float[4];
+        private int size;
+        private float maxRank;
+
+        synchronized void add(int pageId, float rank) {
+            int position = size;
+            if (size > 0 && pageIds[size - 1] >= pageId) {
+                position = Arrays.binarySearch(pageIds, 0, size, pageId);
+                if (position >= 0) {
+                    ranks = Arrays.copyOf(ranks, ranks.length);
+                    ranks[position] = rank;
+                    maxRank = Math.max(maxRank, rank);
+                    return;
+                }
+                position = -position - 1;
+            }
+
+            if (position < size || size == pageIds.length) {
+                int capacity = size == pageIds.length ? size * 2 : pageIds.length;
+                int[] newPageIds = new int[capacity];
+                float[] newRanks = new float[capacity];
+                System.arraycopy(pageIds, 0, newPageIds, 0, position);
+                System.arraycopy(ranks, 0, newRanks, 0, position);
+                System.arraycopy(pageIds, position, newPageIds, position + 1, size - position);
+                System.arraycopy(ranks, position, newRanks, position + 1, size - position);
+                pageIds = newPageIds;
+                ranks = newRanks;
+            }
+            pageIds[position] = pageId;
+            ranks[position] = rank;
+            size++;
+            maxRank = Math.max(maxRank, rank);
+        }
+
+        /** Максимальный ранг не пересчитывается: он остаётся верхней границей для оставшихся страниц. */
+        synchronized void remove(int pageId) {
+            int position = Arrays.binarySearch(pageIds, 0, size, pageId);
+            if (position < 0) {
+                return;
+            }
+            int[] newPageIds = new int[pageIds.length];
+            float[] newRanks = new float[ranks.length];
+            System.arraycopy(pageIds, 0, newPageIds, 0, position);
+            System.arraycopy(ranks, 0, newRanks, 0, position);
+            System.arraycopy(pageIds, position + 1, newPageIds, position, size - position - 1);
+            System.arraycopy(ranks, position + 1, newRanks, position, size - position - 1);
+            pageIds = newPageIds;
+            ranks = newRanks;
+            size--;
+        }
+
+        synchronized Postings snapshot() {
+            return new Postings(pageIds, ranks, null, size);
+        }
+
+        synchronized Float maxRank() {
+            return size == 0 ? null : maxRank;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package searchengine.services;
+
+import lombok.Getter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Узел дерева поискового запроса: лемма, фраза или операция AND / OR / NOT над дочерними узлами.
+ */
+@Getter
+public class QueryNode {
+    public enum Type { TERM, PHRASE, AND, OR, NOT }
+
+    private final Type type;
+    private final String lemma;
+    private final PhraseQuery phrase;
+    private final List<QueryNode> children;
+
+    private QueryNode(Type type, String lemma, PhraseQuery phrase, List<QueryNode> children) {
+        this.type = type;
+        this.lemma = lemma;
+        this.phrase = phrase;
+        this.children = children;
+    }
+
+    public static QueryNode term(String lemma) {
+        return new QueryNode(Type.TERM, lemma, null, List.of());
+    }
+
+    public static QueryNode phrase(PhraseQuery phrase) {
+        return new QueryNode(Type.PHRASE, null, phrase, List.of());
+    }
+
+    public static QueryNode not(QueryNode child) {
+        return new QueryNode(Type.NOT, null, null, List.of(child));
+    }
+
+    public static QueryNode and(List<QueryNode> children) {
+        return children.size() == 1 ? children.get(0) : new QueryNode(Type.AND, null, null, flatten(Type.AND, children));
+    }
+
+    /** Отрицания внутри OR не имеют смысла как альтернатива, поэтому применяются как исключения ко всей группе. */
+    public static QueryNode or(List<QueryNode> children) {
+        List<QueryNode> positive = new ArrayList<>();
+        List<QueryNode> negative = new ArrayList<>();
+        for (QueryNode child : children) {
+            (child.type == Type.NOT ? negative : positive).add(child);
+        }
+        if (positive.isEmpty()) {
+            return and(negative);
+        }
+        QueryNode union = positive.size() == 1
+                ? positive.get(0)
+                : new QueryNode(Type.OR, null, null, flatten(Type.OR, positive));
+        if (negative.isEmpty()) {
+            return union;
+        }
+        List<QueryNode> conjunction = new ArrayList<>();
+        conjunction.add(union);
+        conjunction.addAll(negative);
+        return and(conjunction);
+    }
+
+    /** Все леммы запроса, включая леммы под отрицанием. */
+    public Set<String> lemmas() {
+        Set<String> lemmas = new LinkedHashSet<>();
+        collectLemmas(lemmas, true);
+        return lemmas;
+    }
+
+    /** Леммы, присутствие которых делает страницу релевантной: всё, кроме лемм под отрицанием. */
+    public Set<String> positiveLemmas() {
+        Set<String> lemmas = new LinkedHashSet<>();
+        collectLemmas(lemmas, false);
+        return lemmas;
+    }
+
+    public List<PhraseQuery> phrases() {
+        List<PhraseQuery> phrases = new ArrayList<>();
+        collectPhrases(phrases);
+        return phrases;
+    }
+
+    /** Лемма, фраза или AND из лемм и фраз — для такого запроса применим отбор через {@link TopKRetriever#conjunctive}. */
+    public boolean isConjunctionOfTerms() {
+        if (type == Type.TERM || type == Type.PHRASE) {
+            return true;
+        }
+        return type == Type.AND && children.stream().allMatch(child -> child.type == Type.TERM || child.type == Type.PHRASE);
+    }
+
+    /** OR из отдельных лемм — для такого запроса применим {@link TopKRetriever#disjunctive}. */
+    public boolean isDisjunctionOfTerms() {
+        return type == Type.OR && children.stream().allMatch(child -> child.type == Type.TERM);
+    }
+
+    /** Копия дерева, в которой леммы заменены по словарю replacements; остальные леммы остаются как есть. */
+    public QueryNode rewrite(Map<String, String> replacements) {
+        return switch (type) {
+            case TERM -> term(replacements.getOrDefault(lemma, lemma));
+            case PHRASE -> phrase(new PhraseQuery(
+                    phrase.getLemmas().stream().map(word -> replacements.getOrDefault(word, word)).toList(),
+                    phrase.getOffsets(), phrase.getSlop()));
+            case NOT -> not(children.get(0).rewrite(replacements));
+            case AND -> and(children.stream().map(child -> child.rewrite(replacements)).toList());
+            case OR -> or(children.stream().map(child -> child.rewrite(replacements)).toList());
+        };
+    }
+
+    private void collectLemmas(Set<String> lemmas, boolean includeNegated) {
+        switch (type) {
+            case TERM -> lemmas.add(lemma);
+            case PHRASE -> lemmas.addAll(phrase.getLemmas());
+            case NOT -> {
+                if (includeNegated) {
+                    children.get(0).collectLemmas(lemmas, true);
+                }
+            }
+            default -> children.forEach(child -> child.collectLemmas(lemmas, includeNegated));
+        }
+    }
+
+    private void collectPhrases(List<PhraseQuery> phrases) {
+        if (type == Type.PHRASE) {
+            phrases.add(phrase);
+        }
+        children.forEach(child -> child.collectPhrases(phrases));
+    }
+
+    private static List<QueryNode> flatten(Type type, List<QueryNode> children) {
+        List<QueryNode> flat = new ArrayList<>();
+        for (QueryNode child : children) {
+            if (child.type == type) {
+                flat.addAll(child.children);
+            } else {
+                flat.add(child);
+            }
+        }
+        return List.copyOf(flat);
+    }
+
+    @Override
+    public String toString() {
+        return switch (type) {
+            case TERM -> lemma;
+            case PHRASE -> "\"" + String.join(" ", phrase.getLemmas()) + "\"" + (phrase.getSlop() > 0 ? "~" + phrase.getSlop() : "");
+            case NOT -> "NOT " + children.get(0);
+            default -> children.stream().map(QueryNode::toString)
+                    .collect(java.util.stream.Collectors.joining(" " + type + " ", "(", ")"));
+        };
+    }
+}
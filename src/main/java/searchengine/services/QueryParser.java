@@ -0,0 +1,206 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.utils.IntList;
+import searchengine.utils.LemmaProcessor;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Разбор поискового запроса в дерево {@link QueryNode}.
+ * Поддерживаются операторы AND, OR, NOT (и префикс "-"), скобки, фразы в кавычках и "фраза"~N.
+ * Слова без оператора между ними объединяются оператором search-settings.default-operator.
+ * Приоритет: NOT, затем AND, затем OR.
+ */
+@Component
+public class QueryParser {
+    private static final Set<String> OPERATORS = Set.of("AND", "OR", "NOT");
+
+    private final LemmaProcessor lemmaProcessor;
+    private final SearchSettings searchSettings;
+
+    public QueryParser(LemmaProcessor lemmaProcessor, SearchSettings searchSettings) {
+        this.lemmaProcessor = lemmaProcessor;
+        this.searchSettings = searchSettings;
+    }
+
+    /** null, если в запросе нет ни одной значимой леммы. */
+    public QueryNode parse(String query) {
+        Parser parser = new Parser(tokenize(query), "OR".equalsIgnoreCase(searchSettings.getDefaultOperator()));
+        return parser.parseQuery();
+    }
+
+    /**
+     * Нормализованная запись запроса для сравнения: лексемы через один пробел, слова в нижнем регистре.
+     * Операторы AND, OR и NOT сохраняют регистр — в нижнем регистре это обычные слова.
+     */
+    public String normalize(String query) {
+        return tokenize(query).stream()
+                .map(token -> OPERATORS.contains(token) ? token : token.toLowerCase(Locale.ROOT).replaceAll("\\s+", " "))
+                .collect(Collectors.joining(" "));
+    }
+
+    private List<String> tokenize(String query) {
+        List<String> tokens = new ArrayList<>();
+        int index = 0;
+        while (index < query.length()) {
+            char current = query.charAt(index);
+            if (Character.isWhitespace(current)) {
+                index++;
+            } else if (current == '(' || current == ')') {
+                tokens.add(String.valueOf(current));
+                index++;
+            } else if (current == '"') {
+                int end = query.indexOf('"', index + 1);
+                end = end < 0 ? query.length() : end + 1;
+                while (end < query.length() && (query.charAt(end) == '~' || Character.isDigit(query.charAt(end)))) {
+                    end++;
+                }
+                tokens.add(query.substring(index, end));
+                index = end;
+            } else if (current == '-' && index + 1 < query.length() && !Character.isWhitespace(query.charAt(index + 1))) {
+                tokens.add("-");
+                index++;
+            } else {
+                int end = index;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end))
+                        && "()\"".indexOf(query.charAt(end)) < 0) {
+                    end++;
+                }
+                tokens.add(query.substring(index, end));
+                index = end;
+            }
+        }
+        return tokens;
+    }
+
+    private class Parser {
+        private final List<String> tokens;
+        private final boolean implicitOr;
+        private int position;
+
+        private Parser(List<String> tokens, boolean implicitOr) {
+            this.tokens = tokens;
+            this.implicitOr = implicitOr;
+        }
+
+        private QueryNode parseQuery() {
+            List<QueryNode> parts = new ArrayList<>();
+            addIfPresent(parts, parseOr());
+            while (position < tokens.size()) {
+                position++;
+                addIfPresent(parts, parseOr());
+            }
+            if (parts.isEmpty()) {
+                return null;
+            }
+            return implicitOr ? QueryNode.or(parts) : QueryNode.and(parts);
+        }
+
+        private QueryNode parseOr() {
+            List<QueryNode> operands = new ArrayList<>();
+            addIfPresent(operands, parseAnd());
+            while (position < tokens.size() && !peek().equals(")")) {
+                if (peek().equals("OR")) {
+                    position++;
+                } else if (!implicitOr) {
+                    break;
+                }
+                addIfPresent(operands, parseAnd());
+            }
+            return operands.isEmpty() ? null : QueryNode.or(operands);
+        }
+
+        private QueryNode parseAnd() {
+            List<QueryNode> operands = new ArrayList<>();
+            addIfPresent(operands, parseUnary());
+            while (position < tokens.size() && !peek().equals(")") && !peek().equals("OR")) {
+                if (peek().equals("AND")) {
+                    position++;
+                } else if (implicitOr) {
+                    break;
+                }
+                addIfPresent(operands, parseUnary());
+            }
+            return operands.isEmpty() ? null : QueryNode.and(operands);
+        }
+
+        private QueryNode parseUnary() {
+            if (position >= tokens.size()) {
+                return null;
+            }
+            String token = tokens.get(position++);
+            switch (token) {
+                case "NOT", "-" -> {
+                    QueryNode operand = parseUnary();
+                    return operand == null ? null : QueryNode.not(operand);
+                }
+                case "(" -> {
+                    QueryNode inner = parseOr();
+                    if (position < tokens.size() && peek().equals(")")) {
+                        position++;
+                    }
+                    return inner;
+                }
+                case ")", "AND", "OR" -> {
+                    return null;
+                }
+                default -> {
+                    return token.startsWith("\"") ? phrase(token) : words(token);
+                }
+            }
+        }
+
+        private String peek() {
+            return tokens.get(position);
+        }
+
+        private void addIfPresent(List<QueryNode> operands, QueryNode node) {
+            if (node != null) {
+                operands.add(node);
+            }
+        }
+    }
+
+    private QueryNode words(String text) {
+        List<QueryNode> terms = new ArrayList<>();
+        for (String lemma : new LinkedHashSet<>(lemmaProcessor.extractLemmas(text))) {
+            terms.add(QueryNode.term(lemma));
+        }
+        return terms.isEmpty() ? null : QueryNode.and(terms);
+    }
+
+    private QueryNode phrase(String token) {
+        int closing = token.indexOf('"', 1);
+        String text = closing < 0 ? token.substring(1) : token.substring(1, closing);
+        int slop = 0;
+        int tilde = token.lastIndexOf('~');
+        if (closing >= 0 && tilde > closing) {
+            String digits = token.substring(tilde + 1);
+            slop = digits.isEmpty() || digits.length() > 4 ? 0 : Integer.parseInt(digits);
+        }
+
+        Map<String, IntList> positions = lemmaProcessor.extractLemmaPositions(text);
+        List<Map.Entry<Integer, String>> entries = new ArrayList<>();
+        positions.forEach((lemma, lemmaPositions) -> {
+            for (int i = 0; i < lemmaPositions.size(); i++) {
+                entries.add(Map.entry(lemmaPositions.get(i), lemma));
+            }
+        });
+        if (entries.isEmpty()) {
+            return null;
+        }
+        if (positions.size() == 1 && entries.size() == 1) {
+            return QueryNode.term(entries.get(0).getValue());
+        }
+        entries.sort(Map.Entry.comparingByKey());
+        List<String> lemmas = new ArrayList<>();
+        int[] offsets = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            offsets[i] = entries.get(i).getKey();
+            lemmas.add(entries.get(i).getValue());
+        }
+        return QueryNode.phrase(new PhraseQuery(lemmas, offsets, slop));
+    }
+}
@@ -0,0 +1,40 @@
+package searchengine.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+@Getter
+@AllArgsConstructor
+public class QueryPlan {
+    /** Леммы, по которым ищутся страницы, от редких к частым. */
+    private final List<String> lemmas;
+    /** Строки таблицы lemma для этих лемм — по одной на каждый сайт, где лемма встречается. */
+    private final List<QueryTerm> terms;
+    /** Строки таблицы lemma для всех найденных лемм запроса, включая исключённые из поиска частые. */
+    private final List<QueryTerm> allTerms;
+
+    public static QueryPlan empty() {
+        return new QueryPlan(List.of(), List.of(), List.of());
+    }
+
+    /** Объединение планов, построенных для разных сайтов. */
+    public static QueryPlan merge(List<QueryPlan> plans) {
+        Set<String> lemmas = new LinkedHashSet<>();
+        List<QueryTerm> terms = new ArrayList<>();
+        List<QueryTerm> allTerms = new ArrayList<>();
+        for (QueryPlan plan : plans) {
+            lemmas.addAll(plan.lemmas);
+            terms.addAll(plan.terms);
+            allTerms.addAll(plan.allTerms);
+        }
+        return new QueryPlan(new ArrayList<>(lemmas), terms, allTerms);
+    }
+
+    public boolean isEmpty() {
+        return lemmas.isEmpty();
+    }
+}
@@ -0,0 +1,80 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.repository.LemmaRepository;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Готовит список лемм запроса к выполнению на одном сайте: сортирует их по возрастанию частоты
+ * и отбрасывает леммы, встречающиеся на слишком большой доле страниц сайта.
+ */
+@Component
+public class QueryPlanner {
+    private static final Logger logger = LoggerFactory.getLogger(QueryPlanner.class);
+
+    private final LemmaRepository lemmaRepository;
+    private final DocumentStatistics documentStatistics;
+    private final SearchSettings searchSettings;
+    private final PostingsReplica postingsReplica;
+
+    public QueryPlanner(LemmaRepository lemmaRepository, DocumentStatistics documentStatistics, SearchSettings searchSettings, PostingsReplica postingsReplica) {
+        this.lemmaRepository = lemmaRepository;
+        this.documentStatistics = documentStatistics;
+        this.searchSettings = searchSettings;
+        this.postingsReplica = postingsReplica;
+    }
+
+    /**
+     * Если requireAll, пустой план означает, что хотя бы одна лемма запроса не встречается в индексе;
+     * иначе отсутствующие в индексе леммы просто не участвуют в поиске.
+     */
+    public QueryPlan plan(List<String> lemmas, int siteId, boolean requireAll) {
+        List<QueryTerm> terms = postingsReplica.isReady() ? postingsReplica.terms(lemmas, siteId) : loadTerms(lemmas, siteId);
+        Map<String, Long> frequencies = new HashMap<>();
+        for (QueryTerm term : terms) {
+            frequencies.merge(term.getLemma(), (long) term.getFrequency(), Long::sum);
+        }
+
+        if (requireAll && !frequencies.keySet().containsAll(lemmas)) {
+            logger.debug("Леммы запроса отсутствуют в индексе: {}", lemmas);
+            return QueryPlan.empty();
+        }
+        if (frequencies.isEmpty()) {
+            return QueryPlan.empty();
+        }
+
+        double threshold = documentStatistics.pageCount(siteId) * searchSettings.getMaxLemmaFrequencyPercent() / 100.0;
+
+        List<String> ordered = lemmas.stream()
+                .filter(frequencies::containsKey)
+                .sorted(Comparator.comparingLong(frequencies::get))
+                .collect(Collectors.toList());
+        List<String> selective = ordered.stream()
+                .filter(lemma -> frequencies.get(lemma) <= threshold)
+                .collect(Collectors.toList());
+
+        if (selective.isEmpty()) {
+            return new QueryPlan(ordered, terms, terms);
+        }
+        if (selective.size() < ordered.size()) {
+            logger.debug("Слишком частые леммы исключены из запроса: {}",
+                    ordered.stream().filter(lemma -> !selective.contains(lemma)).collect(Collectors.toList()));
+        }
+        List<QueryTerm> selectiveTerms = terms.stream()
+                .filter(term -> selective.contains(term.getLemma()))
+                .collect(Collectors.toList());
+        return new QueryPlan(selective, selectiveTerms, terms);
+    }
+
+    private List<QueryTerm> loadTerms(List<String> lemmas, int siteId) {
+        List<QueryTerm> terms = new ArrayList<>();
+        for (Object[] row : lemmaRepository.findFrequenciesByLemmasAndSiteId(lemmas, siteId)) {
+            terms.add(new QueryTerm((Integer) row[0], (String) row[1], (Integer) row[2], (Integer) row[3], (Float) row[4]));
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,14 @@
+package searchengine.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class QueryTerm {
+    private final int lemmaId;
+    private final String lemma;
+    private final int siteId;
+    private final int frequency;
+    private final Float maxRank;
+}
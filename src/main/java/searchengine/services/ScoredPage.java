@@ -0,0 +1,16 @@
+package searchengine.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import java.util.Comparator;
+
+@Getter
+@AllArgsConstructor
+public class ScoredPage {
+    public static final Comparator<ScoredPage> BY_RELEVANCE = Comparator
+            .comparingDouble(ScoredPage::getScore).reversed()
+            .thenComparingInt(ScoredPage::getPageId);
+
+    private final int pageId;
+    private final double score;
+}
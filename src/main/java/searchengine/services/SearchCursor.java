@@ -0,0 +1,58 @@
+package searchengine.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Продолжение выдачи: оценка и id последней выданной страницы, сколько результатов уже выдано,
+ * общее число найденных страниц и хеш запроса с сайтом, к которым курсор привязан.
+ * Клиенту передаётся непрозрачной строкой.
+ */
+@Getter
+@AllArgsConstructor
+public class SearchCursor {
+    private static final int ENCODED_BYTES = Double.BYTES + 4 * Integer.BYTES;
+
+    private final double score;
+    private final int pageId;
+    private final int position;
+    private final int totalCount;
+    private final int binding;
+
+    /** Хеш нормализованного запроса и сайта: курсор принимается только для того же запроса. */
+    public static int binding(String normalizedQuery, String site) {
+        return (normalizedQuery + '|' + (site == null ? "" : site.trim())).hashCode();
+    }
+
+    /** Идёт ли страница в выдаче после курсора (порядок {@link ScoredPage#BY_RELEVANCE}). */
+    public boolean precedes(int pageId, double score) {
+        return score < this.score || (score == this.score && pageId > this.pageId);
+    }
+
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODED_BYTES)
+                .putDouble(score)
+                .putInt(pageId)
+                .putInt(position)
+                .putInt(totalCount)
+                .putInt(binding);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /** null, если строка не является курсором. */
+    public static SearchCursor decode(String token) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (bytes.length != ENCODED_BYTES) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new SearchCursor(buffer.getDouble(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+    }
+}
@@ -0,0 +1,159 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.dto.search.PageSummary;
+import searchengine.dto.search.SearchResult;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.PageRepository;
+import searchengine.utils.LemmaProcessor;
+import searchengine.utils.PositionCodec;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Превращает отобранные страницы в результаты выдачи: заголовок и сайт из таблицы page, сниппет
+ * по сохранённым позициям лемм. Общий для всех реализаций {@link SearchService}.
+ */
+@Component
+public class SearchResultMaterializer {
+    private static final int SNIPPET_WORDS = 30;
+    private static final int SNIPPET_CONTEXT_WORDS = 5;
+
+    private final PageRepository pageRepository;
+    private final IndexRepository indexRepository;
+
+    public SearchResultMaterializer(PageRepository pageRepository, IndexRepository indexRepository) {
+        this.pageRepository = pageRepository;
+        this.indexRepository = indexRepository;
+    }
+
+    /** lemmaById — id строк lemma для лемм запроса, по ним читаются позиции для сниппетов. */
+    public List<SearchResult> materialize(List<ScoredPage> pageSlice, Map<Integer, String> lemmaById, List<String> lemmas) {
+        List<Integer> pageIds = pageSlice.stream()
+                .map(ScoredPage::getPageId)
+                .collect(Collectors.toList());
+        Map<Integer, PageSummary> summaries = pageRepository.findSummariesByIds(pageIds).stream()
+                .collect(Collectors.toMap(PageSummary::getId, Function.identity()));
+        Map<Integer, String> contents = new HashMap<>();
+        for (Object[] row : pageRepository.findContentsByIds(pageIds)) {
+            contents.put((Integer) row[0], (String) row[1]);
+        }
+
+        Map<Integer, TreeMap<Integer, String>> matchesByPage = new HashMap<>();
+        List<Object[]> positionRows = lemmaById.isEmpty()
+                ? List.of()
+                : indexRepository.findPositionsByPageIdsAndLemmaIds(pageIds, lemmaById.keySet());
+        for (Object[] row : positionRows) {
+            if (row[2] == null) {
+                continue;
+            }
+            TreeMap<Integer, String> matches = matchesByPage.computeIfAbsent((Integer) row[0], id -> new TreeMap<>());
+            for (int position : PositionCodec.decode((byte[]) row[2])) {
+                matches.put(position, lemmaById.get((Integer) row[1]));
+            }
+        }
+
+        List<SearchResult> results = new ArrayList<>();
+        for (ScoredPage scoredPage : pageSlice) {
+            PageSummary summary = summaries.get(scoredPage.getPageId());
+            if (summary == null) {
+                continue;
+            }
+            String content = contents.getOrDefault(summary.getId(), "");
+            TreeMap<Integer, String> matches = matchesByPage.get(summary.getId());
+            String snippet = matches == null || matches.isEmpty()
+                    ? generateSnippet(content, lemmas, summary.getPath())
+                    : generateSnippet(content, matches, summary.getPath());
+            results.add(new SearchResult(
+                    summary.getSiteUrl(),
+                    summary.getSiteName(),
+                    summary.getPath(),
+                    summary.getTitle(),
+                    snippet,
+                    scoredPage.getScore()
+            ));
+        }
+        return results;
+    }
+
+    /**
+     * Сниппет по сохранённым позициям: выбирается окно из SNIPPET_WORDS слов с наибольшим
+     * числом совпадений, совпавшие слова выделяются.
+     */
+    private String generateSnippet(String content, TreeMap<Integer, String> matches, String pagePath) {
+        int[] wordOffsets = LemmaProcessor.wordOffsets(content);
+        int wordCount = wordOffsets.length / 2;
+        List<Integer> positions = new ArrayList<>(matches.headMap(wordCount).keySet());
+        if (positions.isEmpty()) {
+            return "...Совпадений не найдено...";
+        }
+
+        int bestStart = positions.get(0);
+        int bestCount = 0;
+        for (int i = 0, j = 0; i < positions.size(); i++) {
+            while (positions.get(i) - positions.get(j) >= SNIPPET_WORDS) {
+                j++;
+            }
+            if (i - j + 1 > bestCount) {
+                bestCount = i - j + 1;
+                bestStart = positions.get(j);
+            }
+        }
+
+        int firstWord = Math.max(bestStart - SNIPPET_CONTEXT_WORDS, 0);
+        int lastWord = Math.min(firstWord + SNIPPET_WORDS, wordCount) - 1;
+        StringBuilder snippet = new StringBuilder("...");
+        int cursor = wordOffsets[2 * firstWord];
+        for (int word = firstWord; word <= lastWord; word++) {
+            String lemma = matches.get(word);
+            if (lemma == null) {
+                continue;
+            }
+            int start = wordOffsets[2 * word];
+            int end = wordOffsets[2 * word + 1];
+            snippet.append(content, cursor, start)
+                    .append("<b><a href=\"").append(pagePath).append("#match-").append(lemma.hashCode()).append("\">")
+                    .append(content, start, end)
+                    .append("</a></b>");
+            cursor = end;
+        }
+        snippet.append(content, cursor, wordOffsets[2 * lastWord + 1]);
+        return snippet.append("...").toString();
+    }
+
+    private String generateSnippet(String content, List<String> lemmas, String pagePath) {
+        int snippetLength = 200;
+        String lowerContent = content.toLowerCase();
+
+        List<Integer> lemmaPositions = new ArrayList<>();
+        for (String lemma : lemmas) {
+            String lowerLemma = lemma.toLowerCase();
+            int index = 0;
+            while ((index = lowerContent.indexOf(lowerLemma, index)) != -1) {
+                lemmaPositions.add(index);
+                index += lowerLemma.length();
+            }
+        }
+
+        if (lemmaPositions.isEmpty()) {
+            return "...Совпадений не найдено...";
+        }
+
+        int start = Math.max(lemmaPositions.get(0) - 50, 0);
+        int end = Math.min(start + snippetLength, content.length());
+
+        String snippet = content.substring(start, end);
+
+        for (String lemma : lemmas) {
+            String lowerLemma = lemma.toLowerCase();
+            snippet = snippet.replaceAll("(?i)" + lowerLemma, "<b><a href=\"" + pagePath + "#match-" + lemma.hashCode() + "\">" + "$0" + "</a></b>");
+        }
+
+        return "..." + snippet + "...";
+    }
+}
@@ -3,5 +3,16 @@ package searchengine.services;
 import searchengine.dto.search.SearchResponse;
 
 public interface SearchService {
-    SearchResponse search(String query, String site, int offset, int limit);
+    default SearchResponse search(String query, String site, int offset, int limit) {
+        return search(query, site, offset, limit, null);
+    }
+
+    /** cursor — значение из предыдущего ответа; если он задан, offset не используется. */
+    SearchResponse search(String query, String site, int offset, int limit, String cursor);
+
+    /**
+     * Тот же поиск, но результаты строятся по мере обхода выдачи, а не собираются в один ответ.
+     * Ранжирование выполняется здесь же, поэтому его ошибки выбрасываются до начала передачи.
+     */
+    SearchStream stream(String query, String site, int offset, int limit, String cursor);
 }
@@ -1,120 +1,378 @@
 package searchengine.services;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import searchengine.dto.search.SearchResponse;
 import searchengine.dto.search.SearchResult;
-import searchengine.repository.PageRepository;
-import searchengine.repository.LemmaRepository;
 import searchengine.repository.IndexRepository;
-import searchengine.utils.LemmaProcessor;
-import searchengine.model.Page;
+import searchengine.repository.SiteRepository;
+import searchengine.config.SearchSettings;
+import searchengine.model.Site;
+import searchengine.utils.RequestCoalescer;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
 
 @Service
+@ConditionalOnProperty(prefix = "search-settings", name = "engine", havingValue = "jpa", matchIfMissing = true)
 public class SearchServiceImpl implements SearchService {
-    private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
+    private static final Logger logger = LoggerFactory.getLogger(SearchServiceImpl.class);
+    private static final int STREAM_BATCH_SIZE = 10;
     private final IndexRepository indexRepository;
-    private final LemmaProcessor lemmaProcessor;
+    private final QueryPlanner queryPlanner;
+    private final QueryParser queryParser;
+    private final Bm25Scorer bm25Scorer;
+    private final TypoCorrector typoCorrector;
+    private final SiteRepository siteRepository;
+    private final SearchSettings searchSettings;
+    private final PostingsReplica postingsReplica;
+    private final SearchResultMaterializer materializer;
+    private final ExecutorService searchExecutor;
+    private final RequestCoalescer<String, SearchResponse> searchCoalescer = new RequestCoalescer<>();
 
-    public SearchServiceImpl(PageRepository pageRepository, LemmaRepository lemmaRepository, IndexRepository indexRepository, LemmaProcessor lemmaProcessor) {
-        this.pageRepository = pageRepository;
-        this.lemmaRepository = lemmaRepository;
+    public SearchServiceImpl(IndexRepository indexRepository, QueryPlanner queryPlanner, QueryParser queryParser, Bm25Scorer bm25Scorer, TypoCorrector typoCorrector, SiteRepository siteRepository, SearchSettings searchSettings, PostingsReplica postingsReplica, SearchResultMaterializer materializer, @Qualifier("searchExecutor") ExecutorService searchExecutor) {
         this.indexRepository = indexRepository;
-        this.lemmaProcessor = lemmaProcessor;
+        this.queryPlanner = queryPlanner;
+        this.queryParser = queryParser;
+        this.bm25Scorer = bm25Scorer;
+        this.typoCorrector = typoCorrector;
+        this.siteRepository = siteRepository;
+        this.searchSettings = searchSettings;
+        this.postingsReplica = postingsReplica;
+        this.materializer = materializer;
+        this.searchExecutor = searchExecutor;
     }
 
     @Override
-    public SearchResponse search(String query, String site, int offset, int limit) {
+    public SearchResponse search(String query, String site, int offset, int limit, String cursor) {
+        SearchResponse invalid = validate(query, site, cursor);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        String key = queryParser.normalize(query) + '|' + (site == null ? "" : site.trim()) + '|' + offset + '|' + limit
+                + '|' + (cursor == null ? "" : cursor.trim());
+        return searchCoalescer.execute(key, () -> {
+            logger.debug("Выполняем поиск: {}", key);
+            RankedSearch ranked = rank(query, site, offset, limit, decodeCursor(cursor));
+            if (ranked.error != null) {
+                return ranked.error;
+            }
+            List<SearchResult> results = ranked.pages.isEmpty()
+                    ? List.of()
+                    : materialize(ranked.pages, ranked.plan, ranked.lemmas);
+            return new SearchResponse(true, ranked.totalCount, results, ranked.nextCursor);
+        });
+    }
+
+    /** Результаты строятся пачками по STREAM_BATCH_SIZE страниц. Одинаковые запросы здесь не объединяются. */
+    @Override
+    public SearchStream stream(String query, String site, int offset, int limit, String cursor) {
+        SearchResponse invalid = validate(query, site, cursor);
+        if (invalid != null) {
+            return SearchStream.of(invalid);
+        }
+
+        RankedSearch ranked = rank(query, site, offset, limit, decodeCursor(cursor));
+        if (ranked.error != null) {
+            return SearchStream.of(ranked.error);
+        }
+        return new SearchStream(new SearchResponse(true, ranked.totalCount, null, ranked.nextCursor), action -> {
+            for (int from = 0; from < ranked.pages.size(); from += STREAM_BATCH_SIZE) {
+                List<ScoredPage> batch = ranked.pages.subList(from, Math.min(from + STREAM_BATCH_SIZE, ranked.pages.size()));
+                materialize(batch, ranked.plan, ranked.lemmas).forEach(action);
+            }
+        });
+    }
+
+    /** Курсор принимается, только если он выдан для того же запроса и сайта. */
+    private SearchResponse validate(String query, String site, String cursor) {
         if (query == null || query.trim().isEmpty()) {
             return new SearchResponse("Задан пустой поисковый запрос");
         }
+        if (cursor != null && !cursor.isBlank()) {
+            SearchCursor after = decodeCursor(cursor);
+            if (after == null || after.getBinding() != SearchCursor.binding(queryParser.normalize(query), site)
+                    || after.getTotalCount() < 0 || after.getPosition() < 0) {
+                return new SearchResponse("Некорректный курсор");
+            }
+        }
+        return null;
+    }
 
-        List<String> lemmas = lemmaProcessor.extractLemmas(query);
-        if (lemmas.isEmpty()) {
-            return new SearchResponse("Не удалось обработать запрос");
+    private SearchCursor decodeCursor(String cursor) {
+        return cursor == null || cursor.isBlank() ? null : SearchCursor.decode(cursor.trim());
+    }
+
+    /**
+     * Без курсора отбираются offset + limit лучших страниц и считается общее число найденных — точно до
+     * search-settings.count-limit, дальше подсчёт останавливается и число служит нижней границей.
+     * С курсором отбираются limit страниц, идущих после него, а общее число берётся из курсора.
+     * При limit <= 0 выдача пуста.
+     */
+    private RankedSearch rank(String query, String site, int offset, int limit, SearchCursor after) {
+        QueryNode root = queryParser.parse(query);
+        if (root == null) {
+            return RankedSearch.failed(new SearchResponse("Не удалось обработать запрос"));
+        }
+        Map<String, String> corrections = typoCorrector.corrections(root.lemmas());
+        if (!corrections.isEmpty()) {
+            logger.debug("Исправлены опечатки в запросе: {}", corrections);
+            root = root.rewrite(corrections);
+        }
+        logger.debug("Дерево запроса: {}", root);
+        Set<String> positiveLemmas = root.positiveLemmas();
+        if (positiveLemmas.isEmpty() || limit <= 0) {
+            return new RankedSearch(null, QueryPlan.empty(), List.of(), List.of(), 0, null);
         }
 
-        List<Page> pages;
-        if (site == null || site.isEmpty()) {
-            pages = pageRepository.findPagesByLemmas(lemmas);
+        List<Integer> siteIds = siteIds(site);
+        int skip = after == null ? Math.max(offset, 0) : 0;
+        int topK = (int) Math.min(Integer.MAX_VALUE, (long) skip + limit);
+        QueryNode parsed = root;
+        List<SiteRanking> rankings;
+        if (siteIds.size() == 1) {
+            rankings = List.of(rankSite(parsed, siteIds.get(0), topK, after));
         } else {
-            pages = pageRepository.findPagesByLemmas(lemmas, site);
+            List<CompletableFuture<SiteRanking>> futures = siteIds.stream()
+                    .map(siteId -> CompletableFuture.supplyAsync(() -> rankSite(parsed, siteId, topK, after), searchExecutor))
+                    .collect(Collectors.toList());
+            rankings = futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
         }
 
-        List<Page> pagesWithMatches = pages.stream()
-                .filter(page -> hasLemmasMatches(page, lemmas))
-                .collect(Collectors.toList());
+        List<ScoredPage> ranked = TopKRetriever.merge(
+                rankings.stream().map(ranking -> ranking.collector.results()).collect(Collectors.toList()), topK);
+        int countLimit = countLimit();
+        int totalCount = after == null
+                ? (int) Math.min(countLimit, rankings.stream().mapToLong(ranking -> ranking.collector.matchCount()).sum())
+                : after.getTotalCount();
+        boolean countTruncated = totalCount >= countLimit;
+        QueryPlan plan = QueryPlan.merge(rankings.stream().map(ranking -> ranking.plan).collect(Collectors.toList()));
 
-        List<SearchResult> results = pagesWithMatches.stream()
-                .map(page -> new SearchResult(
-                        page.getSite().getUrl(),
-                        page.getSite().getName(),
-                        page.getPath(),
-                        page.getTitle(),
-                        generateSnippet(page.getContent(), lemmas, page.getPath()),
-                        calculateRelevance(page, lemmas)
-                ))
-                .sorted((a, b) -> Double.compare(b.getRelevance(), a.getRelevance()))
-                .skip(offset)
-                .limit(limit)
+        List<ScoredPage> pageSlice = ranked.stream()
+                .skip(skip)
                 .collect(Collectors.toList());
+        String nextCursor = null;
+        if (!pageSlice.isEmpty()) {
+            int position = (after == null ? skip : after.getPosition()) + pageSlice.size();
+            ScoredPage last = pageSlice.get(pageSlice.size() - 1);
+            if (position < totalCount || countTruncated && pageSlice.size() == limit) {
+                nextCursor = new SearchCursor(last.getScore(), last.getPageId(), position, totalCount,
+                        SearchCursor.binding(queryParser.normalize(query), site)).encode();
+            }
+        }
+        return new RankedSearch(null, plan, new ArrayList<>(positiveLemmas), pageSlice, totalCount, nextCursor);
+    }
 
-        return new SearchResponse(true, results.size(), results);
+    private int countLimit() {
+        return searchSettings.getCountLimit() > 0 ? searchSettings.getCountLimit() : Integer.MAX_VALUE;
     }
 
-    private boolean hasLemmasMatches(Page page, List<String> lemmas) {
-        String content = page.getContent().toLowerCase();
-        for (String lemma : lemmas) {
-            if (!content.contains(lemma.toLowerCase())) {
-                return false;
-            }
+    /** Все сайты, если site не задан; иначе сайт с этим адресом (пусто, если такого нет). */
+    private List<Integer> siteIds(String site) {
+        if (site == null || site.isBlank()) {
+            return siteRepository.findAll().stream().map(Site::getId).collect(Collectors.toList());
         }
-        return true;
+        Site found = siteRepository.findByUrl(site.trim());
+        return found == null ? List.of() : List.of(found.getId());
     }
 
-    private String generateSnippet(String content, List<String> lemmas, String pagePath) {
-        int snippetLength = 200;
-        String lowerContent = content.toLowerCase();
+    /** Отбор лучших страниц одного сайта: план, статистика и списки лемм — только этого сайта. */
+    private SiteRanking rankSite(QueryNode root, int siteId, int topK, SearchCursor after) {
+        TopKCollector collector = new TopKCollector(topK, after);
+        QueryPlan plan;
+        if (root.isConjunctionOfTerms() || root.isDisjunctionOfTerms()) {
+            boolean conjunctive = root.isConjunctionOfTerms();
+            plan = queryPlanner.plan(new ArrayList<>(root.positiveLemmas()), siteId, conjunctive);
+            if (!plan.isEmpty()) {
+                rankPages(plan, siteId, root.phrases(), conjunctive, collector, after == null);
+            }
+        } else {
+            plan = queryPlanner.plan(new ArrayList<>(root.lemmas()), siteId, false);
+            if (!plan.isEmpty()) {
+                rankBooleanQuery(root, plan, collector);
+            }
+        }
+        return new SiteRanking(plan, collector);
+    }
 
-        List<Integer> lemmaPositions = new ArrayList<>();
-        for (String lemma : lemmas) {
-            String lowerLemma = lemma.toLowerCase();
-            int index = 0;
-            while ((index = lowerContent.indexOf(lowerLemma, index)) != -1) {
-                lemmaPositions.add(index);
-                index += lowerLemma.length();
+    private void rankPages(QueryPlan plan, int siteId, List<PhraseQuery> phrases, boolean conjunctive,
+                           TopKCollector collector, boolean countMatches) {
+        List<QueryTerm> terms = plan.getTerms();
+        Map<Integer, Postings> postingsByLemma = loadPostings(terms, false);
+        List<PostingsCursor> cursors = cursors(terms, postingsByLemma);
+        if (!conjunctive) {
+            if (countMatches) {
+                collector.addMatches(TopKRetriever.countDisjunctive(postings(terms, postingsByLemma), countLimit()));
             }
+            TopKRetriever.disjunctive(cursors, collector);
+            return;
         }
 
-        if (lemmaPositions.isEmpty()) {
-            return "...Совпадений не найдено...";
+        Map<Integer, Postings> positionsByLemma = phrases.isEmpty()
+                ? Map.of()
+                : loadPostings(phraseTerms(plan, phrases), true);
+        List<PhraseMatcher> matchers = phraseMatchers(plan, phrases, siteId, positionsByLemma);
+        if (matchers == null) {
+            return;
         }
+        IntPredicate filter = matchers.isEmpty() ? null
+                : pageId -> matchers.stream().allMatch(matcher -> matcher.matches(pageId));
+        if (countMatches) {
+            collector.addMatches(TopKRetriever.countConjunctive(postings(terms, postingsByLemma), filter, countLimit()));
+        }
+        TopKRetriever.conjunctive(cursors, collector, filter);
+    }
+
+    /**
+     * Запрос с NOT, скобками или смешением AND/OR: страницы отбираются операциями над списками
+     * по всем леммам запроса (без отсечения частых), затем оцениваются по леммам вне отрицаний.
+     */
+    private void rankBooleanQuery(QueryNode root, QueryPlan plan, TopKCollector collector) {
+        List<QueryTerm> terms = plan.getAllTerms();
+        Map<Integer, Postings> postingsByLemma = loadPostings(terms, false);
+        List<PhraseQuery> phrases = root.phrases();
+        Map<Integer, Postings> positionsByLemma = phrases.isEmpty()
+                ? Map.of()
+                : loadPostings(phraseTerms(plan, phrases), true);
+
+        Map<String, Postings> sitePostings = new HashMap<>();
+        Map<String, Postings> sitePositions = new HashMap<>();
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (QueryTerm term : terms) {
+            sitePostings.put(term.getLemma(), postingsByLemma.getOrDefault(term.getLemmaId(), Postings.EMPTY));
+            sitePositions.put(term.getLemma(), positionsByLemma.getOrDefault(term.getLemmaId(), Postings.EMPTY));
+            frequencies.put(term.getLemma(), term.getFrequency());
+        }
+        int[] pageIds = new BooleanQueryExecutor(sitePostings, sitePositions, frequencies).evaluate(root);
+        if (pageIds.length == 0) {
+            return;
+        }
+        collector.addMatches(pageIds.length);
+        Set<String> positiveLemmas = root.positiveLemmas();
+        List<QueryTerm> scoredTerms = terms.stream()
+                .filter(term -> positiveLemmas.contains(term.getLemma()))
+                .collect(Collectors.toList());
+        TopKRetriever.candidates(pageIds, cursors(scoredTerms, postingsByLemma), collector);
+    }
+
+    private List<PostingsCursor> cursors(List<QueryTerm> terms, Map<Integer, Postings> postingsByLemma) {
+        List<PostingsCursor> cursors = new ArrayList<>();
+        for (QueryTerm term : terms) {
+            Bm25Scorer.TermScorer scorer = bm25Scorer.forTerm(term);
+            Postings postings = postingsByLemma.getOrDefault(term.getLemmaId(), Postings.EMPTY);
+            cursors.add(new PostingsCursor(postings, scorer, scorer.upperBound(term.getMaxRank())));
+        }
+        return cursors;
+    }
+
+    private List<Postings> postings(List<QueryTerm> terms, Map<Integer, Postings> postingsByLemma) {
+        return terms.stream()
+                .map(term -> postingsByLemma.getOrDefault(term.getLemmaId(), Postings.EMPTY))
+                .collect(Collectors.toList());
+    }
 
-        int start = Math.max(lemmaPositions.get(0) - 50, 0);
-        int end = Math.min(start + snippetLength, content.length());
+    private List<QueryTerm> phraseTerms(QueryPlan plan, List<PhraseQuery> phrases) {
+        Set<String> phraseLemmas = new HashSet<>();
+        phrases.forEach(phrase -> phraseLemmas.addAll(phrase.getLemmas()));
+        return plan.getAllTerms().stream()
+                .filter(term -> phraseLemmas.contains(term.getLemma()))
+                .collect(Collectors.toList());
+    }
 
-        String snippet = content.substring(start, end);
+    /** null, если на сайте нет какой-либо леммы из фраз запроса. */
+    private List<PhraseMatcher> phraseMatchers(QueryPlan plan, List<PhraseQuery> phrases, int siteId,
+                                               Map<Integer, Postings> positionsByLemma) {
+        Map<String, Integer> siteLemmaIds = new HashMap<>();
+        for (QueryTerm term : plan.getAllTerms()) {
+            if (term.getSiteId() == siteId) {
+                siteLemmaIds.put(term.getLemma(), term.getLemmaId());
+            }
+        }
+        List<PhraseMatcher> matchers = new ArrayList<>();
+        for (PhraseQuery phrase : phrases) {
+            List<Postings> phrasePostings = new ArrayList<>();
+            for (String lemma : phrase.getLemmas()) {
+                Integer lemmaId = siteLemmaIds.get(lemma);
+                if (lemmaId == null) {
+                    return null;
+                }
+                phrasePostings.add(positionsByLemma.getOrDefault(lemmaId, Postings.EMPTY));
+            }
+            matchers.add(new PhraseMatcher(phrasePostings, phrase.getOffsets(), phrase.getSlop()));
+        }
+        return matchers;
+    }
 
-        for (String lemma : lemmas) {
-            String lowerLemma = lemma.toLowerCase();
-            snippet = snippet.replaceAll("(?i)" + lowerLemma, "<b><a href=\"" + pagePath + "#match-" + lemma.hashCode() + "\">" + "$0" + "</a></b>");
+    /** Списки без позиций берутся из копии индекса в памяти, если она включена и загружена. */
+    private Map<Integer, Postings> loadPostings(List<QueryTerm> terms, boolean withPositions) {
+        if (!withPositions && postingsReplica.isReady()) {
+            Map<Integer, Postings> postings = new HashMap<>();
+            terms.forEach(term -> postings.put(term.getLemmaId(), postingsReplica.postings(term.getLemmaId())));
+            return postings;
         }
+        Map<Integer, Postings.Builder> builders = new HashMap<>();
+        List<Integer> lemmaIds = terms.stream().map(QueryTerm::getLemmaId).distinct().collect(Collectors.toList());
+        List<Object[]> rows = withPositions
+                ? indexRepository.findPostingsWithPositionsByLemmaIds(lemmaIds)
+                : indexRepository.findPostingsByLemmaIds(lemmaIds);
+        for (Object[] posting : rows) {
+            builders.computeIfAbsent((Integer) posting[1], id -> new Postings.Builder())
+                    .add((Integer) posting[0], (Float) posting[2], withPositions ? (byte[]) posting[3] : null);
+        }
+        Map<Integer, Postings> postings = new HashMap<>();
+        builders.forEach((lemmaId, builder) -> postings.put(lemmaId, builder.build()));
+        return postings;
+    }
 
-        return "..." + snippet + "...";
+    private List<SearchResult> materialize(List<ScoredPage> pages, QueryPlan plan, List<String> lemmas) {
+        Map<Integer, String> lemmaById = new HashMap<>();
+        plan.getAllTerms().forEach(term -> lemmaById.put(term.getLemmaId(), term.getLemma()));
+        return materializer.materialize(pages, lemmaById, lemmas);
     }
 
-    private double calculateRelevance(Page page, List<String> lemmas) {
-        String content = page.getContent().toLowerCase();
-        double relevance = 0.0;
+    /** План и отобранные страницы одного сайта. */
+    private static final class SiteRanking {
+        private final QueryPlan plan;
+        private final TopKCollector collector;
 
-        for (String lemma : lemmas) {
-            String lowerLemma = lemma.toLowerCase();
-            relevance += content.split(lowerLemma, -1).length - 1;
+        private SiteRanking(QueryPlan plan, TopKCollector collector) {
+            this.plan = plan;
+            this.collector = collector;
         }
+    }
+
+    /** Отобранные страницы выдачи до построения сниппетов либо ошибка разбора запроса. */
+    private static final class RankedSearch {
+        private final SearchResponse error;
+        private final QueryPlan plan;
+        private final List<String> lemmas;
+        private final List<ScoredPage> pages;
+        private final int totalCount;
+        private final String nextCursor;
 
-        return relevance;
+        private RankedSearch(SearchResponse error, QueryPlan plan, List<String> lemmas, List<ScoredPage> pages,
+                             int totalCount, String nextCursor) {
+            this.error = error;
+            this.plan = plan;
+            this.lemmas = lemmas;
+            this.pages = pages;
+            this.totalCount = totalCount;
+            this.nextCursor = nextCursor;
+        }
+
+        private static RankedSearch failed(SearchResponse error) {
+            return new RankedSearch(error, QueryPlan.empty(), List.of(), List.of(), 0, null);
+        }
     }
 }
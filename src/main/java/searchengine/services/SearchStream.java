@@ -0,0 +1,30 @@
+package searchengine.services;
+
+import lombok.Getter;
+import searchengine.dto.search.SearchResponse;
+import searchengine.dto.search.SearchResult;
+import java.util.function.Consumer;
+
+/**
+ * Потоковая выдача: заголовок (ответ без data — итог или ошибка) посчитан заранее, вместе с ранжированием;
+ * результаты строятся пачками при обходе {@link #forEachResult}.
+ */
+public class SearchStream {
+    @Getter
+    private final SearchResponse header;
+    private final Consumer<Consumer<SearchResult>> results;
+
+    public SearchStream(SearchResponse header, Consumer<Consumer<SearchResult>> results) {
+        this.header = header;
+        this.results = results;
+    }
+
+    /** Выдача без результатов: ошибка или ничего не найдено. */
+    public static SearchStream of(SearchResponse header) {
+        return new SearchStream(header, action -> { });
+    }
+
+    public void forEachResult(Consumer<SearchResult> action) {
+        results.accept(action);
+    }
+}
@@ -0,0 +1,14 @@
+package searchengine.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Публикуется, когда завершена (успешно или нет) индексация сайта, чтобы обновить производные от индекса структуры.
+ */
+@Getter
+@AllArgsConstructor
+public class SiteIndexedEvent {
+    private final int siteId;
+    private final String siteUrl;
+}
@@ -0,0 +1,15 @@
+package searchengine.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import java.time.Instant;
+
+/**
+ * Адрес из sitemap.xml и время его последнего изменения, если сайт его указал.
+ */
+@Getter
+@AllArgsConstructor
+public class SitemapEntry {
+    private final String url;
+    private final Instant lastModified;
+}
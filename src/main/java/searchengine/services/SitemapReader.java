@@ -0,0 +1,156 @@
+package searchengine.services;
+
+import org.jsoup.Jsoup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlSettings;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Читает карту сайта: адреса sitemap берутся из директив Sitemap в robots.txt, а если их нет — /sitemap.xml.
+ * Файлы sitemap и индексы sitemap разбираются потоково через StAX, поэтому их размер не ограничен памятью.
+ */
+@Component
+public class SitemapReader {
+    private static final Logger logger = LoggerFactory.getLogger(SitemapReader.class);
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows; U; WindowsNT 5.1; en-US; rv1.8.1.6) Gecko/20070725 Firefox/2.0.0.6";
+
+    private final CrawlSettings crawlSettings;
+    private final XMLInputFactory xmlInputFactory;
+
+    public SitemapReader(CrawlSettings crawlSettings) {
+        this.crawlSettings = crawlSettings;
+        this.xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /** Адреса страниц сайта из его sitemap; пустой список, если карты нет или она недоступна. */
+    public List<SitemapEntry> read(String siteUrl) {
+        if (!crawlSettings.isSitemapSeeding()) {
+            return List.of();
+        }
+        URI site = URI.create(siteUrl);
+        Deque<String> sitemaps = new ArrayDeque<>(sitemapsFromRobots(site));
+        if (sitemaps.isEmpty()) {
+            sitemaps.add(site.resolve("/sitemap.xml").toString());
+        }
+
+        Set<String> seenSitemaps = new HashSet<>();
+        Set<String> seenUrls = new HashSet<>();
+        List<SitemapEntry> entries = new ArrayList<>();
+        while (!sitemaps.isEmpty() && seenSitemaps.size() < crawlSettings.getMaxSitemaps()
+                && entries.size() < crawlSettings.getMaxSitemapUrls()) {
+            String sitemap = sitemaps.poll();
+            if (!seenSitemaps.add(sitemap)) {
+                continue;
+            }
+            try (InputStream in = open(sitemap)) {
+                parse(in, siteUrl, sitemaps, seenUrls, entries);
+            } catch (IOException | XMLStreamException e) {
+                logger.warn("Не удалось прочитать sitemap {}: {}", sitemap, e.getMessage());
+            }
+        }
+        logger.info("Из {} файлов sitemap сайта {} получено {} адресов", seenSitemaps.size(), siteUrl, entries.size());
+        return entries;
+    }
+
+    private List<String> sitemapsFromRobots(URI site) {
+        List<String> sitemaps = new ArrayList<>();
+        try {
+            String robots = Jsoup.connect(site.resolve("/robots.txt").toString())
+                    .userAgent(USER_AGENT)
+                    .ignoreContentType(true)
+                    .execute()
+                    .body();
+            for (String line : robots.split("\n")) {
+                String trimmed = line.trim();
+                if (trimmed.regionMatches(true, 0, "sitemap:", 0, "sitemap:".length())) {
+                    String url = trimmed.substring("sitemap:".length()).trim();
+                    if (!url.isEmpty()) {
+                        sitemaps.add(site.resolve(url).toString());
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.info("robots.txt сайта {} недоступен: {}", site, e.getMessage());
+        }
+        return sitemaps;
+    }
+
+    private InputStream open(String sitemap) throws IOException {
+        InputStream in = new BufferedInputStream(Jsoup.connect(sitemap)
+                .userAgent(USER_AGENT)
+                .ignoreContentType(true)
+                .maxBodySize(0)
+                .execute()
+                .bodyStream(), 1 << 16);
+        return sitemap.endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+    }
+
+    private void parse(InputStream in, String siteUrl, Deque<String> sitemaps, Set<String> seenUrls,
+                       List<SitemapEntry> entries) throws XMLStreamException {
+        XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+        try {
+            String loc = null;
+            String lastmod = null;
+            while (reader.hasNext() && entries.size() < crawlSettings.getMaxSitemapUrls()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "url", "sitemap" -> {
+                            loc = null;
+                            lastmod = null;
+                        }
+                        case "loc" -> loc = reader.getElementText().trim();
+                        case "lastmod" -> lastmod = reader.getElementText().trim();
+                        default -> { }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && loc != null) {
+                    if (reader.getLocalName().equals("sitemap")) {
+                        sitemaps.add(loc);
+                    } else if (reader.getLocalName().equals("url") && loc.startsWith(siteUrl) && seenUrls.add(loc)) {
+                        entries.add(new SitemapEntry(loc, parseLastmod(lastmod)));
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /** Дата W3C Datetime из lastmod: только дата или дата со временем и часовым поясом. */
+    static Instant parseLastmod(String lastmod) {
+        if (lastmod == null || lastmod.isEmpty()) {
+            return null;
+        }
+        try {
+            if (lastmod.length() == 10) {
+                return LocalDate.parse(lastmod).atStartOfDay(ZoneOffset.UTC).toInstant();
+            }
+            return OffsetDateTime.parse(lastmod).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
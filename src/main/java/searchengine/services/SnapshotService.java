@@ -0,0 +1,432 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.SnapshotSettings;
+import searchengine.model.IndexingStatus;
+import searchengine.model.Site;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+import searchengine.utils.IntList;
+import searchengine.utils.PositionCodec;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Снимок индекса сайта в двоичном файле: страницы, леммы и связки страница—лемма с позициями.
+ * Файл пишется последовательно, читается через отображение в память; загрузка идёт пакетными вставками
+ * JDBC с заранее назначенными id, без пересчёта лемм и без обхода сайта.
+ *
+ * Формат (версия 1, big-endian): int MAGIC, int VERSION, строка url, строка name, затем три раздела —
+ * страницы, леммы, связки. Каждая запись раздела начинается с байта 1, раздел заканчивается байтом 0.
+ * Строка — int длина в байтах UTF-8 (-1 для null) и сами байты.
+ */
+@Service
+public class SnapshotService {
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotService.class);
+    private static final int MAGIC = 0x53454E53;
+    private static final int VERSION = 1;
+    private static final byte RECORD = 1;
+    private static final byte END = 0;
+    private static final String EXTENSION = ".snapshot";
+
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final IndexRepository indexRepository;
+    private final IndexingService indexingService;
+    private final JdbcTemplate jdbcTemplate;
+    private final SnapshotSettings snapshotSettings;
+    private final TransactionTemplate transactionTemplate;
+    private final LuceneIndex luceneIndex;
+
+    public SnapshotService(SiteRepository siteRepository, PageRepository pageRepository, LemmaRepository lemmaRepository,
+                           IndexRepository indexRepository, IndexingService indexingService, JdbcTemplate jdbcTemplate,
+                           SnapshotSettings snapshotSettings, PlatformTransactionManager transactionManager,
+                           LuceneIndex luceneIndex) {
+        this.siteRepository = siteRepository;
+        this.pageRepository = pageRepository;
+        this.lemmaRepository = lemmaRepository;
+        this.indexRepository = indexRepository;
+        this.indexingService = indexingService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotSettings = snapshotSettings;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.luceneIndex = luceneIndex;
+    }
+
+    /** Пишет снимок сайта в каталог снимков и возвращает имя файла. */
+    public String exportSite(String siteUrl) throws IOException {
+        Site site = siteRepository.findByUrl(siteUrl);
+        if (site == null) {
+            throw new IllegalArgumentException("Сайт не найден: " + siteUrl);
+        }
+        Path directory = Paths.get(snapshotSettings.getDirectory());
+        Files.createDirectories(directory);
+        String fileName = URI.create(site.getUrl()).getHost() + "-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + EXTENSION;
+        Path target = directory.resolve(fileName);
+        Path partial = directory.resolve(fileName + ".part");
+
+        long start = System.currentTimeMillis();
+        int pages = 0;
+        int lemmas = 0;
+        int postings = 0;
+        int siteId = site.getId();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(partial), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, site.getUrl());
+            writeString(out, site.getName());
+
+            for (List<Object[]> rows = pageRepository.findSnapshotRows(siteId, 0, batch()); !rows.isEmpty();
+                 rows = pageRepository.findSnapshotRows(siteId, lastId(rows), batch())) {
+                for (Object[] row : rows) {
+                    out.writeByte(RECORD);
+                    out.writeInt((Integer) row[0]);
+                    writeString(out, (String) row[1]);
+                    out.writeInt((Integer) row[2]);
+                    writeString(out, (String) row[3]);
+                    writeString(out, (String) row[4]);
+                    out.writeInt(row[5] == null ? -1 : (Integer) row[5]);
+                }
+                pages += rows.size();
+            }
+            out.writeByte(END);
+
+            for (List<Object[]> rows = lemmaRepository.findSnapshotRows(siteId, 0, batch()); !rows.isEmpty();
+                 rows = lemmaRepository.findSnapshotRows(siteId, lastId(rows), batch())) {
+                for (Object[] row : rows) {
+                    out.writeByte(RECORD);
+                    out.writeInt((Integer) row[0]);
+                    writeString(out, (String) row[1]);
+                    out.writeInt((Integer) row[2]);
+                    out.writeFloat(row[3] == null ? Float.NaN : (Float) row[3]);
+                }
+                lemmas += rows.size();
+            }
+            out.writeByte(END);
+
+            for (List<Object[]> rows = indexRepository.findSnapshotRows(siteId, 0, batch()); !rows.isEmpty();
+                 rows = indexRepository.findSnapshotRows(siteId, lastId(rows), batch())) {
+                for (Object[] row : rows) {
+                    byte[] positions = (byte[]) row[4];
+                    out.writeByte(RECORD);
+                    out.writeInt((Integer) row[1]);
+                    out.writeInt((Integer) row[2]);
+                    out.writeFloat((Float) row[3]);
+                    out.writeInt(positions == null ? -1 : positions.length);
+                    if (positions != null) {
+                        out.write(positions);
+                    }
+                }
+                postings += rows.size();
+            }
+            out.writeByte(END);
+        }
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+
+        logger.info("Снимок сайта {} записан в {}: страниц {}, лемм {}, связок {} за {} мс",
+                siteUrl, target, pages, lemmas, postings, System.currentTimeMillis() - start);
+        return fileName;
+    }
+
+    /**
+     * Загружает снимок из каталога снимков, заменяя данные сайта. Возвращает адрес загруженного сайта.
+     * Удаление старых данных и загрузка идут в одной транзакции: при ошибке сайт остаётся прежним.
+     * Во время индексации загрузка запрещена: id страниц и лемм назначаются подряд от максимума,
+     * взятого до удаления старых данных, поэтому id удалённого сайта повторно не используются.
+     * Статистика документов и индекс Lucene (если он ведётся) пополняются только после фиксации транзакции;
+     * для Lucene леммы страниц с позициями держатся в памяти до конца загрузки.
+     */
+    public synchronized String importSnapshot(String fileName) throws IOException {
+        indexingService.beginExclusive();
+        try {
+            return importSnapshotFile(fileName);
+        } finally {
+            indexingService.endExclusive();
+        }
+    }
+
+    private String importSnapshotFile(String fileName) throws IOException {
+        Path directory = Paths.get(snapshotSettings.getDirectory()).toAbsolutePath().normalize();
+        Path source = directory.resolve(fileName).normalize();
+        if (!source.startsWith(directory) || !Files.isRegularFile(source)) {
+            throw new IllegalArgumentException("Файл снимка не найден: " + fileName);
+        }
+
+        long start = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Снимки больше 2 ГБ не поддерживаются");
+            }
+            SnapshotReader in = new SnapshotReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Файл не является снимком индекса: " + fileName);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия снимка: " + version);
+            }
+            String siteUrl = in.readString();
+            String siteName = in.readString();
+
+            IntList tokenCounts = new IntList();
+            List<String> lemmas = new ArrayList<>();
+            Map<Integer, Map<String, IntList>> lucenePages = luceneIndex.isEnabled() ? new HashMap<>() : null;
+            int[] counts = new int[2];
+            int pageBase = nextId("page");
+            int lemmaBase = nextId("lemma");
+            try {
+                Site site = transactionTemplate.execute(status -> {
+                    indexingService.deleteSiteData(siteUrl);
+                    // Удаление старой записи сайта должно дойти до базы раньше вставки новой с тем же url
+                    siteRepository.flush();
+                    Site imported = new Site();
+                    imported.setUrl(siteUrl);
+                    imported.setName(siteName);
+                    imported.setStatus(IndexingStatus.INDEXING);
+                    imported.setStatusTime(LocalDateTime.now());
+                    siteRepository.save(imported);
+
+                    IntList pageIds = importPages(in, imported, pageBase, tokenCounts);
+                    IntList lemmaIds = importLemmas(in, imported, lemmaBase, lemmas);
+                    counts[0] = lemmaIds.size();
+                    counts[1] = importPostings(in, pageIds, pageBase, lemmaIds, lemmaBase, lemmas, lucenePages);
+
+                    imported.setStatus(IndexingStatus.INDEXED);
+                    imported.setStatusTime(LocalDateTime.now());
+                    return siteRepository.save(imported);
+                });
+                DocumentStatistics statistics = indexingService.getDocumentStatistics();
+                for (int i = 0; i < tokenCounts.size(); i++) {
+                    if (tokenCounts.get(i) >= 0) {
+                        statistics.recordPage(site.getId(), pageBase + i, tokenCounts.get(i));
+                    }
+                }
+                if (lucenePages != null) {
+                    lucenePages.forEach((pageId, lemmaPositions) -> luceneIndex.indexPage(site.getId(), pageId, lemmaPositions));
+                }
+            } catch (RuntimeException e) {
+                logger.error("Загрузка снимка {} отменена, данные сайта {} не изменены: {}", fileName, siteUrl, e.getMessage());
+                throw e;
+            } finally {
+                indexingService.publishSiteIndexed(siteUrl);
+            }
+            logger.info("Снимок {} загружен: сайт {}, страниц {}, лемм {}, связок {} за {} мс",
+                    fileName, siteUrl, tokenCounts.size(), counts[0], counts[1], System.currentTimeMillis() - start);
+            return siteUrl;
+        }
+    }
+
+    public List<String> listSnapshots() throws IOException {
+        Path directory = Paths.get(snapshotSettings.getDirectory());
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (var files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(EXTENSION))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Старые id страниц в порядке файла; новая страница с номером i получает id base + i,
+     * её длина в леммах (-1, если не задана) добавляется в tokenCounts.
+     */
+    private IntList importPages(SnapshotReader in, Site site, int base, IntList tokenCounts) {
+        IntList oldIds = new IntList();
+        List<Object[]> batch = new ArrayList<>();
+        while (in.readByte() == RECORD) {
+            int oldId = in.readInt();
+            String path = in.readString();
+            int code = in.readInt();
+            String content = in.readString();
+            String title = in.readString();
+            int tokenCount = in.readInt();
+            int pageId = base + oldIds.size();
+            oldIds.add(oldId);
+            batch.add(new Object[]{pageId, site.getId(), path, code, content, title, tokenCount < 0 ? null : tokenCount});
+            tokenCounts.add(tokenCount);
+            if (batch.size() == snapshotSettings.getBatchSize()) {
+                insertPages(batch);
+            }
+        }
+        insertPages(batch);
+        return oldIds;
+    }
+
+    /** Старые id лемм в порядке файла; текст леммы с номером i добавляется в lemmas. */
+    private IntList importLemmas(SnapshotReader in, Site site, int base, List<String> lemmas) {
+        IntList oldIds = new IntList();
+        List<Object[]> batch = new ArrayList<>();
+        while (in.readByte() == RECORD) {
+            int oldId = in.readInt();
+            String lemma = in.readString();
+            int frequency = in.readInt();
+            float maxRank = in.readFloat();
+            batch.add(new Object[]{base + oldIds.size(), site.getId(), lemma, frequency, Float.isNaN(maxRank) ? null : maxRank});
+            oldIds.add(oldId);
+            lemmas.add(lemma);
+            if (batch.size() == snapshotSettings.getBatchSize()) {
+                insertLemmas(batch);
+            }
+        }
+        insertLemmas(batch);
+        return oldIds;
+    }
+
+    /** Если lucenePages не null, в него собираются леммы каждой страницы с позициями для индекса Lucene. */
+    private int importPostings(SnapshotReader in, IntList pageIds, int pageBase, IntList lemmaIds, int lemmaBase,
+                               List<String> lemmas, Map<Integer, Map<String, IntList>> lucenePages) {
+        int[] oldPageIds = pageIds.toArray();
+        int[] oldLemmaIds = lemmaIds.toArray();
+        String sql = "INSERT INTO `index` (page_id, lemma_id, " + rankColumn() + ", positions) VALUES (?, ?, ?, ?)";
+        List<Object[]> batch = new ArrayList<>();
+        int count = 0;
+        while (in.readByte() == RECORD) {
+            int pageId = pageBase + Arrays.binarySearch(oldPageIds, in.readInt());
+            int lemmaIndex = Arrays.binarySearch(oldLemmaIds, in.readInt());
+            int lemmaId = lemmaBase + lemmaIndex;
+            float rank = in.readFloat();
+            byte[] positions = in.readBytes();
+            batch.add(new Object[]{pageId, lemmaId, rank, positions});
+            if (lucenePages != null) {
+                IntList decoded = new IntList();
+                for (int position : PositionCodec.decode(positions)) {
+                    decoded.add(position);
+                }
+                lucenePages.computeIfAbsent(pageId, id -> new HashMap<>()).put(lemmas.get(lemmaIndex), decoded);
+            }
+            count++;
+            if (batch.size() == snapshotSettings.getBatchSize()) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, batch);
+        }
+        return count;
+    }
+
+    private void insertPages(List<Object[]> batch) {
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO page (id, site_id, path, code, content, title, token_count) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)", batch);
+            batch.clear();
+        }
+    }
+
+    private void insertLemmas(List<Object[]> batch) {
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO lemma (id, site_id, lemma, frequency, max_rank) VALUES (?, ?, ?, ?, ?)", batch);
+            batch.clear();
+        }
+    }
+
+    private int nextId(String table) {
+        Integer max = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Integer.class);
+        return (max == null ? 0 : max) + 1;
+    }
+
+    /** Имя столбца ранга в таблице index берётся из метаданных: оно задано в сущности в кавычках. */
+    private String rankColumn() {
+        String column = jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, "index", null)) {
+                while (columns.next()) {
+                    String name = columns.getString("COLUMN_NAME");
+                    if (name.toLowerCase().contains("rank")) {
+                        return name;
+                    }
+                }
+            }
+            return "rank";
+        });
+        return "`" + column + "`";
+    }
+
+    private Pageable batch() {
+        return PageRequest.of(0, snapshotSettings.getBatchSize());
+    }
+
+    private static int lastId(List<Object[]> rows) {
+        return (Integer) rows.get(rows.size() - 1)[0];
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static final class SnapshotReader {
+        private final MappedByteBuffer buffer;
+
+        private SnapshotReader(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        byte readByte() {
+            return buffer.get();
+        }
+
+        int readInt() {
+            return buffer.getInt();
+        }
+
+        float readFloat() {
+            return buffer.getFloat();
+        }
+
+        byte[] readBytes() {
+            int length = buffer.getInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        String readString() {
+            byte[] bytes = readBytes();
+            return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
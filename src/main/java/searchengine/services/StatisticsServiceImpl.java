@@ -6,6 +6,7 @@ import java.time.ZoneOffset;
 import searchengine.repository.LemmaRepository;
 import searchengine.config.SitesList;
 import searchengine.dto.statistics.DetailedStatisticsItem;
+import searchengine.dto.statistics.LemmaCacheStatistics;
 import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
@@ -14,6 +15,8 @@ import searchengine.repository.PageRepository;
 import java.util.ArrayList;
 import searchengine.model.Site;
 import java.util.List;
+import searchengine.utils.LemmaCache;
+import searchengine.utils.LemmaProcessor;
 
 @Service
 @RequiredArgsConstructor
@@ -23,6 +26,9 @@ public class StatisticsServiceImpl implements StatisticsService {
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
     private final SitesList sitesList;
+    private final LemmaProcessor lemmaProcessor;
+    private final CrawlTrapDetector crawlTrapDetector;
+    private final HostConcurrencyController hostConcurrencyController;
 
     @Override
     public StatisticsResponse getStatistics() {
@@ -43,6 +49,7 @@ public class StatisticsServiceImpl implements StatisticsService {
             item.setStatus(site.getStatus().toString());
             item.setError(site.getLastError() != null ? site.getLastError() : "");
             item.setStatusTime(site.getStatusTime().toInstant(ZoneOffset.UTC).toEpochMilli());
+            item.setCrawlTraps(crawlTrapDetector.report(site.getId()));
 
             total.setPages(total.getPages() + item.getPages());
             total.setLemmas(total.getLemmas() + item.getLemmas());
@@ -54,12 +61,26 @@ public class StatisticsServiceImpl implements StatisticsService {
         StatisticsData data = new StatisticsData();
         data.setTotal(total);
         data.setDetailed(detailed);
+        data.setLemmaCache(lemmaCacheStatistics());
+        data.setHosts(hostConcurrencyController.report());
         response.setStatistics(data);
         response.setResult(true);
 
         return response;
     }
 
+    private LemmaCacheStatistics lemmaCacheStatistics() {
+        LemmaCache cache = lemmaProcessor.getCache();
+        LemmaCacheStatistics statistics = new LemmaCacheStatistics();
+        statistics.setSize(cache.size());
+        statistics.setCapacity(cache.capacity());
+        statistics.setHits(cache.hits());
+        statistics.setMisses(cache.misses());
+        long lookups = statistics.getHits() + statistics.getMisses();
+        statistics.setHitRate(lookups == 0 ? 0 : (double) statistics.getHits() / lookups);
+        return statistics;
+    }
+
     @Override
     public void updateStatistics(StatisticsResponse response) {
         System.out.println("Обновление статистики...");
@@ -76,6 +97,7 @@ public class StatisticsServiceImpl implements StatisticsService {
         item.setStatus(site.getStatus().toString());
         item.setError(site.getLastError() != null ? site.getLastError() : "");
         item.setStatusTime(site.getStatusTime().toInstant(ZoneOffset.UTC).toEpochMilli());
+        item.setCrawlTraps(crawlTrapDetector.report(site.getId()));
 
         TotalStatistics total = new TotalStatistics();
         total.setSites(1);  // Один сайт
@@ -0,0 +1,115 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import searchengine.dto.suggest.SuggestItem;
+import searchengine.model.Site;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.SiteRepository;
+import searchengine.utils.LemmaTrie;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Автодополнение по словарю лемм. Для каждого сайта в памяти строится {@link LemmaTrie};
+ * общий словарь собирается из словарей сайтов с суммированием частот.
+ * При завершении индексации из базы перечитывается словарь только этого сайта;
+ * обновлённый общий словарь рассылается событием {@link LemmaDictionaryUpdatedEvent}.
+ */
+@Service
+public class SuggestService {
+    private static final Logger logger = LoggerFactory.getLogger(SuggestService.class);
+    private static final LemmaTrie EMPTY_TRIE = new LemmaTrie(new String[0], new int[0]);
+
+    private final LemmaRepository lemmaRepository;
+    private final SiteRepository siteRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Map<Integer, LemmaTrie> siteTries = new ConcurrentHashMap<>();
+    private final Map<String, Integer> siteIdsByUrl = new ConcurrentHashMap<>();
+    private volatile LemmaTrie globalTrie = EMPTY_TRIE;
+
+    public SuggestService(LemmaRepository lemmaRepository, SiteRepository siteRepository, ApplicationEventPublisher eventPublisher) {
+        this.lemmaRepository = lemmaRepository;
+        this.siteRepository = siteRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public List<SuggestItem> suggest(String query, String site, int limit) {
+        String[] words = query.trim().toLowerCase(Locale.ROOT).split("\\s+");
+        String prefix = words[words.length - 1];
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+
+        LemmaTrie trie = globalTrie;
+        if (site != null && !site.isEmpty()) {
+            Integer siteId = siteIdsByUrl.get(site);
+            trie = siteId == null ? EMPTY_TRIE : siteTries.getOrDefault(siteId, EMPTY_TRIE);
+        }
+        return trie.suggest(prefix, Math.min(limit, LemmaTrie.MAX_SUGGESTIONS)).stream()
+                .map(suggestion -> new SuggestItem(suggestion.getLemma(), suggestion.getFrequency()))
+                .collect(Collectors.toList());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void loadAll() {
+        try {
+            for (Site site : siteRepository.findAll()) {
+                loadSite(site.getId(), site.getUrl());
+            }
+            rebuildGlobal();
+        } catch (Exception e) {
+            logger.error("Не удалось загрузить словарь для автодополнения: {}", e.getMessage(), e);
+        }
+    }
+
+    @EventListener
+    public synchronized void onSiteIndexed(SiteIndexedEvent event) {
+        Set<Integer> existingSiteIds = siteRepository.findAll().stream()
+                .map(Site::getId)
+                .collect(Collectors.toSet());
+        siteTries.keySet().retainAll(existingSiteIds);
+        siteIdsByUrl.values().retainAll(existingSiteIds);
+
+        loadSite(event.getSiteId(), event.getSiteUrl());
+        rebuildGlobal();
+    }
+
+    private void loadSite(int siteId, String siteUrl) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (Object[] row : lemmaRepository.findLemmaFrequenciesBySiteId(siteId)) {
+            frequencies.merge((String) row[0], (Integer) row[1], Integer::sum);
+        }
+        siteTries.put(siteId, buildTrie(frequencies));
+        siteIdsByUrl.put(siteUrl, siteId);
+        logger.info("Словарь автодополнения для сайта {}: {} лемм", siteUrl, frequencies.size());
+    }
+
+    private void rebuildGlobal() {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (LemmaTrie trie : siteTries.values()) {
+            String[] lemmas = trie.lemmas();
+            int[] lemmaFrequencies = trie.frequencies();
+            for (int i = 0; i < lemmas.length; i++) {
+                frequencies.merge(lemmas[i], lemmaFrequencies[i], Integer::sum);
+            }
+        }
+        globalTrie = buildTrie(frequencies);
+        eventPublisher.publishEvent(new LemmaDictionaryUpdatedEvent(globalTrie.lemmas(), globalTrie.frequencies()));
+    }
+
+    private LemmaTrie buildTrie(Map<String, Integer> frequencies) {
+        String[] lemmas = frequencies.keySet().toArray(new String[0]);
+        Arrays.sort(lemmas);
+        int[] lemmaFrequencies = new int[lemmas.length];
+        for (int i = 0; i < lemmas.length; i++) {
+            lemmaFrequencies[i] = frequencies.get(lemmas[i]);
+        }
+        return new LemmaTrie(lemmas, lemmaFrequencies);
+    }
+}
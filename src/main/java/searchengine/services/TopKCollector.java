@@ -0,0 +1,72 @@
+package searchengine.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Хранит K лучших страниц; {@link #threshold()} — оценка, которую нужно превзойти, чтобы попасть в топ.
+ * Если задан курсор, принимаются только страницы, идущие в выдаче после него.
+ * Дополнительно накапливает общее число найденных страниц, если его считают вызывающие.
+ */
+public class TopKCollector {
+    private final int k;
+    private final SearchCursor after;
+    private final PriorityQueue<ScoredPage> heap;
+    private int matchCount;
+
+    public TopKCollector(int k) {
+        this(k, null);
+    }
+
+    public TopKCollector(int k, SearchCursor after) {
+        this.k = k;
+        this.after = after;
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(k, 1024)), ScoredPage.BY_RELEVANCE.reversed());
+    }
+
+    public double threshold() {
+        if (k <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return heap.size() < k ? Double.NEGATIVE_INFINITY : heap.peek().getScore();
+    }
+
+    public boolean wouldAccept(int pageId, double score) {
+        if (k <= 0 || (after != null && !after.precedes(pageId, score))) {
+            return false;
+        }
+        if (heap.size() < k) {
+            return true;
+        }
+        ScoredPage worst = heap.peek();
+        return score > worst.getScore() || (score == worst.getScore() && pageId < worst.getPageId());
+    }
+
+    public void offer(int pageId, double score) {
+        if (k <= 0 || (after != null && !after.precedes(pageId, score))) {
+            return;
+        }
+        ScoredPage candidate = new ScoredPage(pageId, score);
+        if (heap.size() < k) {
+            heap.add(candidate);
+        } else if (ScoredPage.BY_RELEVANCE.compare(candidate, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(candidate);
+        }
+    }
+
+    public void addMatches(int count) {
+        matchCount += count;
+    }
+
+    public int matchCount() {
+        return matchCount;
+    }
+
+    public List<ScoredPage> results() {
+        List<ScoredPage> results = new ArrayList<>(heap);
+        results.sort(ScoredPage.BY_RELEVANCE);
+        return results;
+    }
+}
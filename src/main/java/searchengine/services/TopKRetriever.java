@@ -0,0 +1,235 @@
+package searchengine.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+
+/**
+ * Отбор K лучших страниц по спискам лемм одного сайта с досрочным отсечением (MaxScore):
+ * страница не дооценивается, если даже максимально возможный вклад оставшихся лемм
+ * не позволит ей превзойти текущий порог топа.
+ */
+public final class TopKRetriever {
+
+    private TopKRetriever() {
+    }
+
+    /** Страница должна содержать все леммы. */
+    public static void conjunctive(List<PostingsCursor> cursors, TopKCollector collector) {
+        conjunctive(cursors, collector, null);
+    }
+
+    /**
+     * Страница должна содержать все леммы и пройти filter; фильтр проверяется только для страниц,
+     * которые по оценке попадают в топ.
+     */
+    public static void conjunctive(List<PostingsCursor> cursors, TopKCollector collector, IntPredicate filter) {
+        if (cursors.isEmpty()) {
+            return;
+        }
+        List<PostingsCursor> ordered = new ArrayList<>(cursors);
+        ordered.sort(Comparator.comparingInt(PostingsCursor::size));
+
+        double totalBound = 0;
+        for (PostingsCursor cursor : ordered) {
+            totalBound += cursor.upperBound();
+        }
+
+        PostingsCursor lead = ordered.get(0);
+        for (; !lead.exhausted(); lead.next()) {
+            if (totalBound < collector.threshold()) {
+                return;
+            }
+            int pageId = lead.pageId();
+            double score = lead.score();
+            double remainingBound = totalBound - lead.upperBound();
+            boolean matched = true;
+
+            for (int i = 1; i < ordered.size(); i++) {
+                PostingsCursor cursor = ordered.get(i);
+                if (score + remainingBound < collector.threshold()) {
+                    matched = false;
+                    break;
+                }
+                if (!cursor.advanceTo(pageId)) {
+                    if (cursor.exhausted()) {
+                        return;
+                    }
+                    matched = false;
+                    break;
+                }
+                score += cursor.score();
+                remainingBound -= cursor.upperBound();
+            }
+
+            if (matched && collector.wouldAccept(pageId, score) && (filter == null || filter.test(pageId))) {
+                collector.offer(pageId, score);
+            }
+        }
+    }
+
+    /** Оценивает заранее отобранные страницы (отсортированные по id) по леммам, которые на них есть. */
+    public static void candidates(int[] pageIds, List<PostingsCursor> cursors, TopKCollector collector) {
+        double totalBound = 0;
+        for (PostingsCursor cursor : cursors) {
+            totalBound += cursor.upperBound();
+        }
+        for (int pageId : pageIds) {
+            if (totalBound < collector.threshold()) {
+                return;
+            }
+            double score = 0;
+            for (PostingsCursor cursor : cursors) {
+                if (cursor.advanceTo(pageId)) {
+                    score += cursor.score();
+                }
+            }
+            collector.offer(pageId, score);
+        }
+    }
+
+    /** Страница должна содержать хотя бы одну лемму. */
+    public static void disjunctive(List<PostingsCursor> cursors, TopKCollector collector) {
+        List<PostingsCursor> ordered = new ArrayList<>(cursors);
+        ordered.sort(Comparator.comparingDouble(PostingsCursor::upperBound));
+        int size = ordered.size();
+        double[] boundPrefix = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += ordered.get(i).upperBound();
+            boundPrefix[i] = sum;
+        }
+
+        while (true) {
+            double threshold = collector.threshold();
+            // Леммы 0..firstEssential-1 сами по себе не выводят страницу в топ — по ним не перебираем.
+            int firstEssential = 0;
+            while (firstEssential < size && boundPrefix[firstEssential] < threshold) {
+                firstEssential++;
+            }
+            if (firstEssential == size) {
+                return;
+            }
+
+            int pageId = Integer.MAX_VALUE;
+            for (int i = firstEssential; i < size; i++) {
+                pageId = Math.min(pageId, ordered.get(i).pageId());
+            }
+            if (pageId == Integer.MAX_VALUE) {
+                return;
+            }
+
+            double score = 0;
+            for (int i = firstEssential; i < size; i++) {
+                PostingsCursor cursor = ordered.get(i);
+                if (cursor.pageId() == pageId) {
+                    score += cursor.score();
+                    cursor.next();
+                }
+            }
+
+            boolean pruned = false;
+            for (int i = firstEssential - 1; i >= 0; i--) {
+                if (score + boundPrefix[i] < threshold) {
+                    pruned = true;
+                    break;
+                }
+                PostingsCursor cursor = ordered.get(i);
+                if (cursor.advanceTo(pageId)) {
+                    score += cursor.score();
+                }
+            }
+
+            if (!pruned) {
+                collector.offer(pageId, score);
+            }
+        }
+    }
+
+    /** Число страниц, содержащих все леммы и проходящих filter, — без оценки; подсчёт останавливается на limit. */
+    public static int countConjunctive(List<Postings> postings, IntPredicate filter, int limit) {
+        if (postings.isEmpty()) {
+            return 0;
+        }
+        List<Postings> ordered = new ArrayList<>(postings);
+        ordered.sort(Comparator.comparingInt(Postings::size));
+        int[] positions = new int[ordered.size()];
+        Postings lead = ordered.get(0);
+        int count = 0;
+        candidates:
+        for (int leadPosition = 0; leadPosition < lead.size(); leadPosition++) {
+            int pageId = lead.pageId(leadPosition);
+            for (int i = 1; i < ordered.size(); i++) {
+                Postings other = ordered.get(i);
+                positions[i] = other.seek(pageId, positions[i]);
+                if (positions[i] >= other.size()) {
+                    break candidates;
+                }
+                if (other.pageId(positions[i]) != pageId) {
+                    continue candidates;
+                }
+            }
+            if ((filter == null || filter.test(pageId)) && ++count >= limit) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /** Число страниц, содержащих хотя бы одну лемму; подсчёт останавливается на limit. */
+    public static int countDisjunctive(List<Postings> postings, int limit) {
+        int[] positions = new int[postings.size()];
+        int count = 0;
+        while (true) {
+            int pageId = Integer.MAX_VALUE;
+            for (int i = 0; i < postings.size(); i++) {
+                if (positions[i] < postings.get(i).size()) {
+                    pageId = Math.min(pageId, postings.get(i).pageId(positions[i]));
+                }
+            }
+            if (pageId == Integer.MAX_VALUE || count >= limit) {
+                return count;
+            }
+            count++;
+            for (int i = 0; i < postings.size(); i++) {
+                if (positions[i] < postings.get(i).size() && postings.get(i).pageId(positions[i]) == pageId) {
+                    positions[i]++;
+                }
+            }
+        }
+    }
+
+    /** Слияние выдач, каждая из которых уже упорядочена по {@link ScoredPage#BY_RELEVANCE}, с отбором k лучших. */
+    public static List<ScoredPage> merge(List<List<ScoredPage>> rankings, int k) {
+        PriorityQueue<MergeHead> heads = new PriorityQueue<>(Math.max(1, rankings.size()),
+                (left, right) -> ScoredPage.BY_RELEVANCE.compare(left.page, right.page));
+        for (List<ScoredPage> ranking : rankings) {
+            Iterator<ScoredPage> iterator = ranking.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new MergeHead(iterator.next(), iterator));
+            }
+        }
+        List<ScoredPage> merged = new ArrayList<>();
+        while (merged.size() < k && !heads.isEmpty()) {
+            MergeHead head = heads.poll();
+            merged.add(head.page);
+            if (head.rest.hasNext()) {
+                heads.add(new MergeHead(head.rest.next(), head.rest));
+            }
+        }
+        return merged;
+    }
+
+    private static final class MergeHead {
+        private final ScoredPage page;
+        private final Iterator<ScoredPage> rest;
+
+        private MergeHead(ScoredPage page, Iterator<ScoredPage> rest) {
+            this.page = page;
+            this.rest = rest;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package searchengine.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import searchengine.config.SearchSettings;
+import searchengine.utils.LemmaNgramIndex;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Исправление опечаток в запросе: леммы, которых нет в общем словаре, заменяются ближайшими
+ * проиндексированными леммами через {@link LemmaNgramIndex}. Индекс перестраивается вместе со словарём автодополнения.
+ */
+@Service
+public class TypoCorrector {
+    private static final Logger logger = LoggerFactory.getLogger(TypoCorrector.class);
+
+    private final SearchSettings searchSettings;
+    private volatile LemmaNgramIndex index;
+
+    public TypoCorrector(SearchSettings searchSettings) {
+        this.searchSettings = searchSettings;
+    }
+
+    @EventListener
+    public void onDictionaryUpdated(LemmaDictionaryUpdatedEvent event) {
+        long start = System.currentTimeMillis();
+        index = new LemmaNgramIndex(event.getLemmas(), event.getFrequencies());
+        logger.info("Индекс триграмм для исправления опечаток построен: {} лемм за {} мс",
+                index.size(), System.currentTimeMillis() - start);
+    }
+
+    /** Замены для неизвестных лемм; леммы, для которых ничего близкого не нашлось, в результат не попадают. */
+    public Map<String, String> corrections(Collection<String> lemmas) {
+        LemmaNgramIndex current = index;
+        if (!searchSettings.isTypoCorrection() || current == null || current.size() == 0) {
+            return Map.of();
+        }
+        Map<String, String> corrections = new HashMap<>();
+        for (String lemma : lemmas) {
+            if (current.contains(lemma)) {
+                continue;
+            }
+            String nearest = current.nearest(lemma);
+            if (nearest != null) {
+                corrections.put(lemma, nearest);
+            }
+        }
+        return corrections;
+    }
+}
@@ -0,0 +1,76 @@
+package searchengine.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Ограниченный по размеру потокобезопасный кэш «словоформа → лемма» перед морфологическим словарём.
+ * Записи живут в двух поколениях: новые попадают в молодое, и когда оно заполняется наполовину от ёмкости,
+ * оно становится старым, а прежнее старое выбрасывается целиком. Найденная в старом поколении словоформа
+ * переносится в молодое, поэтому частые слова переживают смену поколений, а редкие вытесняются.
+ */
+public class LemmaCache {
+    /** Значение для словоформ служебных частей речи, которые не индексируются. */
+    private static final String EXCLUDED = new String("");
+
+    private final int generationSize;
+    private volatile Map<String, String> young = new ConcurrentHashMap<>();
+    private volatile Map<String, String> old = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public LemmaCache(int capacity) {
+        this.generationSize = Math.max(capacity / 2, 1);
+    }
+
+    /**
+     * Лемма словоформы; при промахе вычисляется функцией {@code lemmatizer}, которая возвращает null
+     * для исключённых слов. Два потока могут одновременно вычислить одну словоформу — результат одинаков.
+     */
+    public String get(String word, Function<String, String> lemmatizer) {
+        String lemma = young.get(word);
+        if (lemma == null) {
+            lemma = old.get(word);
+            if (lemma == null) {
+                misses.increment();
+                lemma = lemmatizer.apply(word);
+                put(word, lemma == null ? EXCLUDED : lemma);
+                return lemma;
+            }
+            put(word, lemma);
+        }
+        hits.increment();
+        return lemma == EXCLUDED ? null : lemma;
+    }
+
+    private void put(String word, String lemma) {
+        Map<String, String> current = young;
+        current.put(word, lemma);
+        if (current.size() >= generationSize) {
+            synchronized (this) {
+                if (young == current) {
+                    old = current;
+                    young = new ConcurrentHashMap<>();
+                }
+            }
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return young.size() + old.size();
+    }
+
+    public int capacity() {
+        return generationSize * 2;
+    }
+}
@@ -0,0 +1,154 @@
+package searchengine.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Индекс триграмм словаря лемм для поиска ближайшей леммы к слову с опечаткой.
+ * Кандидаты отбираются по числу общих триграмм (k правок меняют не более 3k триграмм слова),
+ * затем проверяются ограниченным расстоянием Левенштейна.
+ */
+public class LemmaNgramIndex {
+    private static final char PAD = '$';
+    private static final int[] NO_LEMMAS = new int[0];
+
+    private final String[] lemmas;
+    private final int[] frequencies;
+    private final Map<Long, int[]> postings;
+    private final ThreadLocal<int[]> overlapCounters;
+
+    /** lemmas должны быть отсортированы и не содержать повторов. */
+    public LemmaNgramIndex(String[] lemmas, int[] frequencies) {
+        this.lemmas = lemmas;
+        this.frequencies = frequencies;
+        this.overlapCounters = ThreadLocal.withInitial(() -> new int[lemmas.length]);
+
+        Map<Long, IntList> builders = new HashMap<>();
+        for (int i = 0; i < lemmas.length; i++) {
+            String padded = PAD + lemmas[i] + PAD;
+            long previous = Long.MIN_VALUE;
+            long[] grams = trigrams(padded);
+            Arrays.sort(grams);
+            for (long gram : grams) {
+                if (gram != previous) {
+                    builders.computeIfAbsent(gram, key -> new IntList()).add(i);
+                    previous = gram;
+                }
+            }
+        }
+        this.postings = new HashMap<>(builders.size() * 2);
+        builders.forEach((gram, ids) -> postings.put(gram, ids.toArray()));
+    }
+
+    public boolean contains(String lemma) {
+        return Arrays.binarySearch(lemmas, lemma) >= 0;
+    }
+
+    /**
+     * Ближайшая к слову лемма словаря: минимальное расстояние правки, при равенстве — более частая.
+     * null, если в пределах допустимого числа правок ничего нет.
+     */
+    public String nearest(String word) {
+        int maxDistance = maxDistance(word.length());
+        if (maxDistance == 0) {
+            return null;
+        }
+
+        long[] grams = trigrams(PAD + word + PAD);
+        Arrays.sort(grams);
+        int requiredOverlap = Math.max(1, distinctCount(grams) - 3 * maxDistance);
+
+        int[] counters = overlapCounters.get();
+        IntList touched = new IntList();
+        long previous = Long.MIN_VALUE;
+        for (long gram : grams) {
+            if (gram == previous) {
+                continue;
+            }
+            previous = gram;
+            for (int lemma : postings.getOrDefault(gram, NO_LEMMAS)) {
+                if (counters[lemma]++ == 0) {
+                    touched.add(lemma);
+                }
+            }
+        }
+
+        String best = null;
+        int bestDistance = maxDistance + 1;
+        int bestFrequency = -1;
+        for (int i = 0; i < touched.size(); i++) {
+            int lemma = touched.get(i);
+            int overlap = counters[lemma];
+            counters[lemma] = 0;
+            if (overlap < requiredOverlap || Math.abs(lemmas[lemma].length() - word.length()) > maxDistance) {
+                continue;
+            }
+            int distance = boundedDistance(word, lemmas[lemma], Math.min(maxDistance, bestDistance));
+            if (distance > maxDistance) {
+                continue;
+            }
+            if (distance < bestDistance || (distance == bestDistance && frequencies[lemma] > bestFrequency)) {
+                best = lemmas[lemma];
+                bestDistance = distance;
+                bestFrequency = frequencies[lemma];
+            }
+        }
+        return best;
+    }
+
+    public int size() {
+        return lemmas.length;
+    }
+
+    private static int maxDistance(int length) {
+        if (length <= 3) {
+            return 0;
+        }
+        return length <= 6 ? 1 : 2;
+    }
+
+    private static long[] trigrams(String padded) {
+        int count = Math.max(padded.length() - 2, 0);
+        long[] grams = new long[count];
+        for (int i = 0; i < count; i++) {
+            grams[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+        return grams;
+    }
+
+    private static int distinctCount(long[] sorted) {
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Расстояние Левенштейна, если оно не больше limit, иначе limit + 1. */
+    private static int boundedDistance(String left, String right, int limit) {
+        int[] previous = new int[right.length() + 1];
+        int[] current = new int[right.length() + 1];
+        for (int j = 0; j <= right.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= left.length(); i++) {
+            current[0] = i;
+            int rowMinimum = current[0];
+            for (int j = 1; j <= right.length(); j++) {
+                int substitution = previous[j - 1] + (left.charAt(i - 1) == right.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+            if (rowMinimum > limit) {
+                return limit + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[right.length()], limit + 1);
+    }
+}
@@ -6,9 +6,9 @@ import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
+import searchengine.config.LemmatizationSettings;
 import java.util.List;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Component
 public class LemmaProcessor {
@@ -16,27 +16,131 @@ public class LemmaProcessor {
     private final LuceneMorphology russianMorphology;
     private final LuceneMorphology englishMorphology;
     private static final Set<String> PARTICLES = Set.of("ПРЕДЛ", "СОЮЗ", "МЕЖД", "ЧАСТ");
+    private final LemmaCache cache;
+    private final int parallelThreshold;
+    private final int chunkSize;
 
-    public LemmaProcessor() throws Exception {
+    public LemmaProcessor(LemmatizationSettings settings) throws Exception {
         this.russianMorphology = new RussianLuceneMorphology();
         this.englishMorphology = new EnglishLuceneMorphology();
+        this.cache = new LemmaCache(settings.getCacheSize());
+        this.parallelThreshold = settings.getParallelThreshold();
+        this.chunkSize = Math.max(settings.getChunkSize(), 1);
+    }
+
+    /** Кэш словоформ, общий для всех потоков индексации и поиска. */
+    public LemmaCache getCache() {
+        return cache;
     }
 
     public List<String> extractLemmas(String text) {
-        List<String> words = splitIntoWords(text.toLowerCase());
-        return words.stream()
-                .map(this::lemmatizeWord)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        List<String> lemmas = new ArrayList<>();
+        WordTokenizer tokenizer = new WordTokenizer(text);
+        while (tokenizer.next()) {
+            String lemma = lemmatizeWord(tokenizer);
+            if (lemma != null) {
+                lemmas.add(lemma);
+            }
+        }
+        return lemmas;
     }
 
-    private String lemmatizeWord(String word) {
-        try {
-            if (word.matches(".*[а-яА-Я]+.*")) {
-                return processLemmas(russianMorphology, word);
-            } else if (word.matches(".*[a-zA-Z]+.*")) {
-                return processLemmas(englishMorphology, word);
+    /**
+     * Леммы текста с порядковыми номерами слов, в которых они встречаются.
+     * Номера считаются по всем словам текста, включая служебные, поэтому расстояние
+     * между позициями совпадает с расстоянием между словами в исходном тексте.
+     */
+    public Map<String, IntList> extractLemmaPositions(String text) {
+        if (text.length() < parallelThreshold) {
+            return new ChunkLemmas(text, 0, text.length()).positions;
+        }
+        return extractLemmaPositionsInParallel(text);
+    }
+
+    /**
+     * Большой текст делится по границам слов на части, которые лемматизируются параллельно — внутри
+     * ForkJoinPool обхода, если вызов пришёл из него, иначе в общем пуле. Части сливаются по порядку
+     * со сдвигом позиций на число слов в предыдущих частях, так что результат тот же, что при
+     * последовательной обработке.
+     */
+    private Map<String, IntList> extractLemmaPositionsInParallel(String text) {
+        List<int[]> bounds = new ArrayList<>();
+        for (int from = 0; from < text.length(); ) {
+            int to = chunkEnd(text, from + chunkSize);
+            bounds.add(new int[]{from, to});
+            from = to;
+        }
+        List<ChunkLemmas> chunks = bounds.parallelStream()
+                .map(range -> new ChunkLemmas(text, range[0], range[1]))
+                .toList();
+
+        Map<String, IntList> positions = new HashMap<>();
+        int offset = 0;
+        for (ChunkLemmas chunk : chunks) {
+            for (Map.Entry<String, IntList> entry : chunk.positions.entrySet()) {
+                IntList target = positions.computeIfAbsent(entry.getKey(), key -> new IntList());
+                IntList source = entry.getValue();
+                for (int i = 0; i < source.size(); i++) {
+                    target.add(source.get(i) + offset);
+                }
+            }
+            offset += chunk.wordCount;
+        }
+        logger.debug("Текст из {} символов лемматизирован в {} частях", text.length(), chunks.size());
+        return positions;
+    }
+
+    /** Ближайшая к {@code index} позиция, не разрезающая слово или суррогатную пару. */
+    private static int chunkEnd(String text, int index) {
+        while (index < text.length()
+                && (Character.isLowSurrogate(text.charAt(index))
+                || Character.isLetter(text.codePointBefore(index)) && Character.isLetter(text.codePointAt(index)))) {
+            index++;
+        }
+        return Math.min(index, text.length());
+    }
+
+    private class ChunkLemmas {
+        private final Map<String, IntList> positions = new HashMap<>();
+        private int wordCount;
+
+        ChunkLemmas(String text, int from, int to) {
+            WordTokenizer tokenizer = new WordTokenizer(text, from, to);
+            for (; tokenizer.next(); wordCount++) {
+                String lemma = lemmatizeWord(tokenizer);
+                if (lemma != null) {
+                    positions.computeIfAbsent(lemma, key -> new IntList()).add(wordCount);
+                }
             }
+        }
+    }
+
+    /**
+     * Границы слов текста: для слова с номером i начало — offsets[2 * i], конец — offsets[2 * i + 1].
+     * Слова определяются так же, как в {@link #extractLemmaPositions(String)}.
+     */
+    public static int[] wordOffsets(String text) {
+        IntList offsets = new IntList();
+        WordTokenizer tokenizer = new WordTokenizer(text);
+        while (tokenizer.next()) {
+            offsets.add(tokenizer.start());
+            offsets.add(tokenizer.end());
+        }
+        return offsets.toArray();
+    }
+
+    private String lemmatizeWord(WordTokenizer tokenizer) {
+        int script = tokenizer.script();
+        if (script == WordTokenizer.OTHER) {
+            return null;
+        }
+        LuceneMorphology morphology = script == WordTokenizer.CYRILLIC ? russianMorphology : englishMorphology;
+        return cache.get(tokenizer.word(), word -> lemmatizeWord(morphology, word));
+    }
+
+    private String lemmatizeWord(LuceneMorphology morphology, String word) {
+        try {
+            return processLemmas(morphology, word);
         } catch (Exception e) {
             System.out.println("Ошибка обработки слова: " + word);
         }
@@ -55,10 +159,4 @@ public class LemmaProcessor {
         }
         return null;
     }
-
-    private List<String> splitIntoWords(String text) {
-        return Arrays.stream(text.split("\\P{L}+"))
-                .filter(word -> !word.isBlank())
-                .collect(Collectors.toList());
-    }
 }
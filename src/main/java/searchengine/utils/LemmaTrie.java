@@ -0,0 +1,120 @@
+package searchengine.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Префиксное дерево по словарю лемм. В каждом узле заранее сохранены MAX_SUGGESTIONS самых частых
+ * лемм поддерева, поэтому ответ на запрос — спуск по префиксу без перебора словаря.
+ * Дерево неизменяемо: при обновлении словаря строится новое.
+ */
+public class LemmaTrie {
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private final String[] lemmas;
+    private final int[] frequencies;
+    private final Node root;
+
+    /** lemmas должны быть отсортированы и не содержать повторов. */
+    public LemmaTrie(String[] lemmas, int[] frequencies) {
+        this.lemmas = lemmas;
+        this.frequencies = frequencies;
+        this.root = build(0, lemmas.length, 0);
+    }
+
+    public int size() {
+        return lemmas.length;
+    }
+
+    public String[] lemmas() {
+        return lemmas;
+    }
+
+    public int[] frequencies() {
+        return frequencies;
+    }
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        if (node == null) {
+            return List.of();
+        }
+        List<Suggestion> suggestions = new ArrayList<>();
+        for (int i = 0; i < node.top.length && i < limit; i++) {
+            suggestions.add(new Suggestion(lemmas[node.top[i]], frequencies[node.top[i]]));
+        }
+        return suggestions;
+    }
+
+    private Node build(int from, int to, int depth) {
+        Node node = new Node();
+        int[] top = new int[0];
+        int start = from;
+        if (start < to && lemmas[start].length() == depth) {
+            top = merge(top, new int[]{start});
+            start++;
+        }
+
+        List<Character> keys = new ArrayList<>();
+        List<Node> children = new ArrayList<>();
+        while (start < to) {
+            char key = lemmas[start].charAt(depth);
+            int end = start + 1;
+            while (end < to && lemmas[end].charAt(depth) == key) {
+                end++;
+            }
+            Node child = build(start, end, depth + 1);
+            keys.add(key);
+            children.add(child);
+            top = merge(top, child.top);
+            start = end;
+        }
+
+        node.keys = new char[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            node.keys[i] = keys.get(i);
+        }
+        node.children = children.toArray(new Node[0]);
+        node.top = top;
+        return node;
+    }
+
+    private int[] merge(int[] left, int[] right) {
+        int[] merged = new int[Math.min(left.length + right.length, MAX_SUGGESTIONS)];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < merged.length; k++) {
+            if (j >= right.length || (i < left.length && frequencies[left[i]] >= frequencies[right[j]])) {
+                merged[k] = left[i++];
+            } else {
+                merged[k] = right[j++];
+            }
+        }
+        return merged;
+    }
+
+    private static class Node {
+        private char[] keys;
+        private Node[] children;
+        private int[] top;
+
+        private Node child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index < 0 ? null : children[index];
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Suggestion {
+        private final String lemma;
+        private final int frequency;
+    }
+}
@@ -0,0 +1,50 @@
+package searchengine.utils;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Кодирование возрастающих позиций слов: разности соседних позиций в формате varint
+ * (по 7 бит на байт, старший бит — признак продолжения).
+ */
+public final class PositionCodec {
+
+    private PositionCodec() {
+    }
+
+    public static byte[] encode(IntList positions) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(positions.size() + 4);
+        int previous = 0;
+        for (int i = 0; i < positions.size(); i++) {
+            int delta = positions.get(i) - previous;
+            previous = positions.get(i);
+            while ((delta & ~0x7F) != 0) {
+                out.write((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            out.write(delta);
+        }
+        return out.toByteArray();
+    }
+
+    public static int[] decode(byte[] encoded) {
+        if (encoded == null) {
+            return new int[0];
+        }
+        IntList positions = new IntList(encoded.length);
+        int previous = 0;
+        int index = 0;
+        while (index < encoded.length) {
+            int delta = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = encoded[index++];
+                delta |= (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0 && index < encoded.length);
+            previous += delta;
+            positions.add(previous);
+        }
+        return positions.toArray();
+    }
+}
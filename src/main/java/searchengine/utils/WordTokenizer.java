@@ -0,0 +1,98 @@
+package searchengine.utils;
+
+import java.util.Arrays;
+
+/**
+ * Однопроходный разбор текста на слова — непрерывные последовательности букв — без регулярных выражений
+ * и промежуточных коллекций. Для каждого слова доступны границы в исходном тексте, письменность
+ * и слово в нижнем регистре, которое собирается в переиспользуемый буфер и превращается в строку только по запросу.
+ */
+public final class WordTokenizer {
+    public static final int OTHER = 0;
+    public static final int CYRILLIC = 1;
+    public static final int LATIN = 2;
+
+    private final String text;
+    private final int limit;
+    private int position;
+    private int start;
+    private int end;
+    private int script;
+    private char[] buffer = new char[32];
+    private int length;
+
+    public WordTokenizer(String text) {
+        this(text, 0, text.length());
+    }
+
+    /** Разбирает только часть текста [from, to); границы не должны разрезать слово. */
+    public WordTokenizer(String text, int from, int to) {
+        this.text = text;
+        this.position = from;
+        this.limit = to;
+    }
+
+    /** Переходит к следующему слову; false, если слов больше нет. */
+    public boolean next() {
+        while (position < limit) {
+            int codePoint = text.codePointAt(position);
+            if (Character.isLetter(codePoint)) {
+                readWord(codePoint);
+                return true;
+            }
+            position += Character.charCount(codePoint);
+        }
+        return false;
+    }
+
+    private void readWord(int codePoint) {
+        start = position;
+        length = 0;
+        boolean cyrillic = false;
+        boolean latin = false;
+        do {
+            int lower = Character.toLowerCase(codePoint);
+            if (lower >= 'а' && lower <= 'я') {
+                cyrillic = true;
+            } else if (lower >= 'a' && lower <= 'z') {
+                latin = true;
+            }
+            append(lower);
+            position += Character.charCount(codePoint);
+        } while (position < limit && Character.isLetter(codePoint = text.codePointAt(position)));
+        end = position;
+        script = cyrillic ? CYRILLIC : latin ? LATIN : OTHER;
+    }
+
+    private void append(int codePoint) {
+        if (length + 2 > buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        if (Character.isBmpCodePoint(codePoint)) {
+            buffer[length++] = (char) codePoint;
+        } else {
+            length += Character.toChars(codePoint, buffer, length);
+        }
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    /**
+     * Письменность слова: {@link #CYRILLIC}, если в нём есть русская буква, иначе {@link #LATIN},
+     * если есть латинская, иначе {@link #OTHER}.
+     */
+    public int script() {
+        return script;
+    }
+
+    /** Текущее слово в нижнем регистре. */
+    public String word() {
+        return new String(buffer, 0, length);
+    }
+}
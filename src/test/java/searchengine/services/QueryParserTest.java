@@ -0,0 +1,63 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import searchengine.config.LemmatizationSettings;
+import searchengine.config.SearchSettings;
+import searchengine.utils.LemmaProcessor;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class QueryParserTest {
+    private static QueryParser parser;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        parser = new QueryParser(new LemmaProcessor(new LemmatizationSettings()), new SearchSettings());
+    }
+
+    @Test
+    void normalizesCaseAndSpacing() {
+        assertEquals("кошка AND собака", parser.normalize("  Кошка   AND  СОБАКА "));
+        assertEquals("( кошка OR собака ) - дом", parser.normalize("(кошка OR собака) -дом"));
+        assertNotEquals(parser.normalize("кошка OR собака"), parser.normalize("кошка or собака"));
+    }
+
+    @Test
+    void parsesOperatorsWithPrecedence() {
+        QueryNode root = parser.parse("кошка OR собака AND дом");
+        assertEquals(QueryNode.Type.OR, root.getType());
+        assertEquals(QueryNode.Type.TERM, root.getChildren().get(0).getType());
+        assertEquals(QueryNode.Type.AND, root.getChildren().get(1).getType());
+    }
+
+    @Test
+    void joinsWordsWithDefaultOperator() {
+        QueryNode root = parser.parse("кошка собака");
+        assertEquals(QueryNode.Type.AND, root.getType());
+        assertEquals(List.of("кошка", "собака"), List.copyOf(root.positiveLemmas()));
+    }
+
+    @Test
+    void appliesNegation() {
+        QueryNode root = parser.parse("кошка -собака");
+        assertEquals(QueryNode.Type.AND, root.getType());
+        assertEquals(QueryNode.Type.NOT, root.getChildren().get(1).getType());
+        assertEquals(List.of("кошка"), List.copyOf(root.positiveLemmas()));
+    }
+
+    @Test
+    void parsesPhraseWithSlop() {
+        QueryNode root = parser.parse("\"кошка собака\"~2");
+        assertEquals(QueryNode.Type.PHRASE, root.getType());
+        assertEquals(2, root.getPhrase().getSlop());
+    }
+
+    @Test
+    void returnsNullWithoutLemmas() {
+        assertNull(parser.parse("  ( ) 123 "));
+    }
+}
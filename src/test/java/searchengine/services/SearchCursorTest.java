@@ -0,0 +1,49 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchCursorTest {
+
+    @Test
+    void roundTripsThroughToken() {
+        SearchCursor cursor = new SearchCursor(3.25, 42, 20, 137, SearchCursor.binding("кошка", "https://example.com"));
+        SearchCursor decoded = SearchCursor.decode(cursor.encode());
+        assertNotNull(decoded);
+        assertEquals(cursor.getScore(), decoded.getScore());
+        assertEquals(cursor.getPageId(), decoded.getPageId());
+        assertEquals(cursor.getPosition(), decoded.getPosition());
+        assertEquals(cursor.getTotalCount(), decoded.getTotalCount());
+        assertEquals(cursor.getBinding(), decoded.getBinding());
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertNull(SearchCursor.decode("не курсор"));
+        assertNull(SearchCursor.decode("AAAA"));
+    }
+
+    @Test
+    void bindsToQueryAndSite() {
+        int binding = SearchCursor.binding("кошка", "https://example.com");
+        assertEquals(binding, SearchCursor.binding("кошка", " https://example.com "));
+        assertNotEquals(binding, SearchCursor.binding("собака", "https://example.com"));
+        assertNotEquals(binding, SearchCursor.binding("кошка", null));
+    }
+
+    @Test
+    void precedesFollowsRelevanceOrder() {
+        SearchCursor cursor = new SearchCursor(2.0, 10, 1, 5, 0);
+        assertTrue(cursor.precedes(5, 1.0));
+        assertTrue(cursor.precedes(11, 2.0));
+        assertFalse(cursor.precedes(10, 2.0));
+        assertFalse(cursor.precedes(9, 2.0));
+        assertFalse(cursor.precedes(1, 3.0));
+    }
+}
@@ -0,0 +1,149 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.SearchSettings;
+import searchengine.repository.PageRepository;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Отбор MaxScore сравнивается с полным перебором: досрочное отсечение не должно менять топ.
+ */
+class TopKRetrieverTest {
+    private static final int SITE_ID = 1;
+    private static final int PAGES = 300;
+
+    private final Random random = new Random(3);
+    private Bm25Scorer scorer;
+
+    @BeforeEach
+    void setUp() {
+        DocumentStatistics statistics = new DocumentStatistics(mock(PageRepository.class));
+        for (int pageId = 1; pageId <= PAGES; pageId++) {
+            statistics.recordPage(SITE_ID, pageId, 50 + random.nextInt(1_000));
+        }
+        scorer = new Bm25Scorer(statistics, new SearchSettings());
+    }
+
+    @Test
+    void conjunctiveMatchesExhaustiveScoring() {
+        for (int round = 0; round < 50; round++) {
+            List<Postings> postings = randomPostings(2 + random.nextInt(3));
+            List<Bm25Scorer.TermScorer> scorers = scorers(postings);
+            int k = 1 + random.nextInt(20);
+            TopKCollector collector = new TopKCollector(k);
+            TopKRetriever.conjunctive(cursors(postings, scorers), collector);
+            assertSameRanking(exhaustive(postings, scorers, true, null, k), collector.results());
+        }
+    }
+
+    @Test
+    void conjunctiveAppliesFilter() {
+        List<Postings> postings = randomPostings(2);
+        List<Bm25Scorer.TermScorer> scorers = scorers(postings);
+        IntPredicate even = pageId -> pageId % 2 == 0;
+        TopKCollector collector = new TopKCollector(10);
+        TopKRetriever.conjunctive(cursors(postings, scorers), collector, even);
+        assertSameRanking(exhaustive(postings, scorers, true, even, 10), collector.results());
+    }
+
+    @Test
+    void disjunctiveMatchesExhaustiveScoring() {
+        for (int round = 0; round < 50; round++) {
+            List<Postings> postings = randomPostings(1 + random.nextInt(4));
+            List<Bm25Scorer.TermScorer> scorers = scorers(postings);
+            int k = 1 + random.nextInt(20);
+            TopKCollector collector = new TopKCollector(k);
+            TopKRetriever.disjunctive(cursors(postings, scorers), collector);
+            assertSameRanking(exhaustive(postings, scorers, false, null, k), collector.results());
+        }
+    }
+
+    @Test
+    void countsStopAtLimit() {
+        List<Postings> postings = randomPostings(3);
+        int conjunctive = exhaustive(postings, scorers(postings), true, null, PAGES).size();
+        int disjunctive = exhaustive(postings, scorers(postings), false, null, PAGES).size();
+        assertEquals(conjunctive, TopKRetriever.countConjunctive(postings, null, Integer.MAX_VALUE));
+        assertEquals(disjunctive, TopKRetriever.countDisjunctive(postings, Integer.MAX_VALUE));
+        assertEquals(Math.min(conjunctive, 3), TopKRetriever.countConjunctive(postings, null, 3));
+        assertEquals(Math.min(disjunctive, 3), TopKRetriever.countDisjunctive(postings, 3));
+    }
+
+    @Test
+    void mergeKeepsRelevanceOrder() {
+        List<ScoredPage> first = List.of(new ScoredPage(1, 5.0), new ScoredPage(4, 2.0));
+        List<ScoredPage> second = List.of(new ScoredPage(2, 5.0), new ScoredPage(3, 3.0), new ScoredPage(5, 1.0));
+        List<ScoredPage> merged = TopKRetriever.merge(List.of(first, second), 4);
+        assertEquals(List.of(1, 2, 3, 4), merged.stream().map(ScoredPage::getPageId).toList());
+    }
+
+    private List<Postings> randomPostings(int terms) {
+        List<Postings> postings = new ArrayList<>();
+        for (int term = 0; term < terms; term++) {
+            double density = 0.1 + random.nextDouble() * 0.8;
+            Postings.Builder builder = new Postings.Builder();
+            for (int pageId = 1; pageId <= PAGES; pageId++) {
+                if (random.nextDouble() < density) {
+                    builder.add(pageId, 1 + random.nextInt(20));
+                }
+            }
+            postings.add(builder.build());
+        }
+        return postings;
+    }
+
+    private List<Bm25Scorer.TermScorer> scorers(List<Postings> postings) {
+        List<Bm25Scorer.TermScorer> scorers = new ArrayList<>();
+        for (int i = 0; i < postings.size(); i++) {
+            scorers.add(scorer.forTerm(new QueryTerm(i, "лемма" + i, SITE_ID, postings.get(i).size(), null)));
+        }
+        return scorers;
+    }
+
+    private static List<PostingsCursor> cursors(List<Postings> postings, List<Bm25Scorer.TermScorer> scorers) {
+        List<PostingsCursor> cursors = new ArrayList<>();
+        for (int i = 0; i < postings.size(); i++) {
+            cursors.add(new PostingsCursor(postings.get(i), scorers.get(i), scorers.get(i).upperBound(null)));
+        }
+        return cursors;
+    }
+
+    private static List<ScoredPage> exhaustive(List<Postings> postings, List<Bm25Scorer.TermScorer> scorers,
+                                               boolean conjunctive, IntPredicate filter, int k) {
+        Map<Integer, Double> scores = new HashMap<>();
+        Map<Integer, Integer> matches = new HashMap<>();
+        for (int i = 0; i < postings.size(); i++) {
+            Postings list = postings.get(i);
+            for (int position = 0; position < list.size(); position++) {
+                int pageId = list.pageId(position);
+                scores.merge(pageId, scorers.get(i).score(pageId, list.rank(position)), Double::sum);
+                matches.merge(pageId, 1, Integer::sum);
+            }
+        }
+        List<ScoredPage> ranking = new ArrayList<>();
+        scores.forEach((pageId, score) -> {
+            if ((!conjunctive || matches.get(pageId) == postings.size()) && (filter == null || filter.test(pageId))) {
+                ranking.add(new ScoredPage(pageId, score));
+            }
+        });
+        ranking.sort(ScoredPage.BY_RELEVANCE);
+        return ranking.subList(0, Math.min(k, ranking.size()));
+    }
+
+    /** Оценки сравниваются с допуском: порядок сложения вкладов лемм у перебора другой. */
+    private static void assertSameRanking(List<ScoredPage> expected, List<ScoredPage> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getScore(), actual.get(i).getScore(), 1e-9);
+        }
+    }
+}
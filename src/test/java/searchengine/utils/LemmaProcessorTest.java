@@ -0,0 +1,55 @@
+package searchengine.utils;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.LemmatizationSettings;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Параллельная лемматизация по частям должна давать те же позиции, что и последовательная.
+ */
+class LemmaProcessorTest {
+    private static final String[] WORDS = {
+            "кошка", "собака", "дом", "ловит", "мышей", "в", "и", "на", "большой", "город",
+            "search", "engine", "the", "index", "pages", "Москва", "2024", "—", "«цитата»"
+    };
+
+    @Test
+    void chunkedPositionsMatchSequential() throws Exception {
+        LemmatizationSettings sequentialSettings = new LemmatizationSettings();
+        sequentialSettings.setParallelThreshold(Integer.MAX_VALUE);
+        LemmatizationSettings chunkedSettings = new LemmatizationSettings();
+        chunkedSettings.setParallelThreshold(0);
+        chunkedSettings.setChunkSize(37);
+        LemmaProcessor sequential = new LemmaProcessor(sequentialSettings);
+        LemmaProcessor chunked = new LemmaProcessor(chunkedSettings);
+
+        Random random = new Random(11);
+        for (int round = 0; round < 20; round++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = random.nextInt(400); i > 0; i--) {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(5) == 0 ? ", " : " ");
+            }
+            Map<String, int[]> expected = arrays(sequential.extractLemmaPositions(text.toString()));
+            Map<String, int[]> actual = arrays(chunked.extractLemmaPositions(text.toString()));
+            assertEquals(expected.keySet(), actual.keySet());
+            expected.forEach((lemma, positions) -> assertArrayEquals(positions, actual.get(lemma), lemma));
+        }
+    }
+
+    @Test
+    void wordOffsetsMatchPositions() {
+        String text = "Кошка, ловит мышей!";
+        assertArrayEquals(new int[]{0, 5, 7, 12, 13, 18}, LemmaProcessor.wordOffsets(text));
+    }
+
+    private static Map<String, int[]> arrays(Map<String, IntList> positions) {
+        Map<String, int[]> arrays = new TreeMap<>();
+        positions.forEach((lemma, list) -> arrays.put(lemma, list.toArray()));
+        return arrays;
+    }
+}
@@ -0,0 +1,38 @@
+package searchengine.utils;
+
+import org.junit.jupiter.api.Test;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PositionCodecTest {
+
+    @Test
+    void roundTripsIncreasingPositions() {
+        Random random = new Random(1);
+        for (int i = 0; i < 1_000; i++) {
+            IntList positions = new IntList();
+            int position = random.nextInt(10);
+            for (int j = random.nextInt(50); j > 0; j--) {
+                positions.add(position);
+                position += 1 + (random.nextBoolean() ? random.nextInt(100) : random.nextInt(1 << 20));
+            }
+            assertArrayEquals(positions.toArray(), PositionCodec.decode(PositionCodec.encode(positions)));
+        }
+    }
+
+    @Test
+    void encodesDeltasInSevenBitGroups() {
+        IntList positions = new IntList();
+        positions.add(0);
+        positions.add(5);
+        positions.add(133);
+        assertEquals(4, PositionCodec.encode(positions).length);
+    }
+
+    @Test
+    void decodesNullAsEmpty() {
+        assertArrayEquals(new int[0], PositionCodec.decode(null));
+    }
+}
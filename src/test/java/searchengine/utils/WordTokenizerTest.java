@@ -0,0 +1,91 @@
+package searchengine.utils;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Сравнение {@link WordTokenizer} с прежним разбором: split по \P{L}+ текста в нижнем регистре
+ * и выбор письменности регулярными выражениями.
+ */
+class WordTokenizerTest {
+    private static final String ALPHABET = "абвгдеёжзийклмнопрстуфхцчшщъыьэюяАБВГДЕЁЖЗИЙКЛМНОПРСТУФХЦЧШЩЪЫЬЭЮЯ"
+            + "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZßéüΩλ"
+            + "0123456789 .,;:-!?\n\t«»—'\"()_";
+    private static final String SUPPLEMENTARY_LETTER = "𝔸";
+
+    @Test
+    void matchesRegexSplitOnRandomText() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2_000; i++) {
+            String text = randomText(random, random.nextInt(200));
+            assertEquals(oldTokens(text), tokens(new WordTokenizer(text)), text);
+        }
+    }
+
+    @Test
+    void rangeTokenizersCoverWholeText() {
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            String text = randomText(random, 50 + random.nextInt(200));
+            int middle = text.length() / 2;
+            while (middle < text.length() && Character.isLetter(text.codePointBefore(middle))
+                    && Character.isLetter(text.codePointAt(middle))
+                    || middle < text.length() && Character.isLowSurrogate(text.charAt(middle))) {
+                middle++;
+            }
+            List<String> parts = new ArrayList<>(tokens(new WordTokenizer(text, 0, middle)));
+            parts.addAll(tokens(new WordTokenizer(text, middle, text.length())));
+            assertEquals(tokens(new WordTokenizer(text)), parts, text);
+        }
+    }
+
+    @Test
+    void reportsWordBounds() {
+        String text = "  Привет, world!";
+        WordTokenizer tokenizer = new WordTokenizer(text);
+        tokenizer.next();
+        assertEquals("Привет", text.substring(tokenizer.start(), tokenizer.end()));
+        tokenizer.next();
+        assertEquals("world", text.substring(tokenizer.start(), tokenizer.end()));
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(50) == 0) {
+                text.append(SUPPLEMENTARY_LETTER);
+            } else {
+                text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+        }
+        return text.toString();
+    }
+
+    private static List<String> tokens(WordTokenizer tokenizer) {
+        List<String> tokens = new ArrayList<>();
+        while (tokenizer.next()) {
+            tokens.add(tokenizer.word() + "/" + tokenizer.script());
+        }
+        return tokens;
+    }
+
+    private static List<String> oldTokens(String text) {
+        return Arrays.stream(text.toLowerCase().split("\\P{L}+"))
+                .filter(word -> !word.isBlank())
+                .map(word -> word + "/" + oldScript(word))
+                .collect(Collectors.toList());
+    }
+
+    private static int oldScript(String word) {
+        if (word.matches(".*[а-яА-Я]+.*")) {
+            return WordTokenizer.CYRILLIC;
+        }
+        return word.matches(".*[a-zA-Z]+.*") ? WordTokenizer.LATIN : WordTokenizer.OTHER;
+    }
+}